@@ -0,0 +1,8 @@
+package org.example.config;
+
+public enum ContentStorageMode {
+    /** Страница хранится целиком, как получена. */
+    HTML,
+    /** Хранятся только заголовок и видимый текст страницы в минимальной HTML-обёртке. */
+    TEXT
+}
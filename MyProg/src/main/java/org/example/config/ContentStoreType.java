@@ -0,0 +1,8 @@
+package org.example.config;
+
+public enum ContentStoreType {
+    /** Содержимое страниц хранится в колонке {@code page.content}. */
+    DATABASE,
+    /** Содержимое страниц хранится в файлах сегментов вне базы. */
+    SEGMENT_FILES
+}
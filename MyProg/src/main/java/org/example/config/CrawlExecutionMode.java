@@ -0,0 +1,8 @@
+package org.example.config;
+
+public enum CrawlExecutionMode {
+    /** Фиксированный пул потоков по числу ядер. */
+    FORK_JOIN,
+    /** Загрузка и сохранение каждой страницы в отдельном виртуальном потоке. */
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,8 @@
+package org.example.config;
+
+public enum SeenFilterMode {
+    /** Хэш-множество адресов: без ошибок, но несколько сотен байт на адрес. */
+    EXACT,
+    /** Фильтр Блума в массиве {@code long}: несколько байт на адрес, малая доля новых адресов теряется. */
+    BLOOM
+}
@@ -3,9 +3,22 @@ package org.example.config;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 @Setter
 @Getter
 public class Site {
     private String url;
     private String name;
+    /** Интервал между запросами к сайту в миллисекундах; если не задан, берётся общий. */
+    private Long crawlDelay;
+    /**
+     * Параметры запроса, различающие страницы сайта, например номер страницы
+     * списка; {@code *} — все параметры. Если не задан, берётся общий список.
+     */
+    private List<String> significantParams;
+    /** Доля сайта в общем пуле обхода относительно других сайтов; по умолчанию 1. */
+    private Double weight;
+    /** Сколько страниц сайта может загружаться одновременно; если не задано, берётся общая настройка. */
+    private Integer maxConcurrency;
 }
@@ -13,4 +13,113 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private List<Site> sites;
+    /**
+     * Инкрементальный обход: сайт и его страницы переиспользуются, страницы
+     * запрашиваются условно, неизменившиеся страницы не переиндексируются.
+     */
+    private boolean incremental = false;
+    /** Интервал между запросами к одному хосту по умолчанию, мс. */
+    private long crawlDelay = 1500;
+    /** Сколько запросов к хосту можно сделать подряд без паузы. */
+    private int crawlBurst = 1;
+    private CrawlExecutionMode executionMode = CrawlExecutionMode.FORK_JOIN;
+    /** Сколько страниц может загружаться одновременно по всем сайтам в режиме виртуальных потоков. */
+    private int maxConcurrentFetches = 2000;
+    /**
+     * Сколько страниц одного сайта может загружаться одновременно в режиме
+     * виртуальных потоков, если у сайта не задано своё ограничение.
+     */
+    private int maxFetchesPerSite = 64;
+    /** Тайм-аут загрузки страницы, мс. */
+    private long fetchTimeout = 10000;
+    /** Сколько байт тела страницы читается не больше; остаток отбрасывается. 0 — без ограничения. */
+    private long maxBodyBytes = 5 * 1024 * 1024;
+    /**
+     * Подстраивать скорость обхода каждого хоста под время его ответов
+     * и долю ошибок; {@code crawlDelay} тогда задаёт начальный интервал,
+     * а интервал из настроек сайта — нижнюю границу.
+     */
+    private boolean adaptiveCrawlRate = true;
+    /** Сколько запросов к одному хосту может выполняться одновременно при подстройке. */
+    private int maxHostConcurrency = 8;
+    /** Наименьший интервал между запросами к хосту при подстройке, мс. */
+    private long minCrawlDelay = 200;
+    /** Наибольший интервал между запросами к хосту при подстройке, мс. */
+    private long maxCrawlDelay = 30000;
+    /** Допустимый 95-й перцентиль времени загрузки страницы, мс. */
+    private long targetFetchLatency = 2000;
+    /** Допустимая доля ошибок загрузки. */
+    private double maxFetchErrorRate = 0.1;
+    /** По скольким последним запросам к хосту принимается решение о скорости. */
+    private int adaptiveWindow = 20;
+    /** Сколько раз страница перегруженного хоста откладывается на потом. */
+    private int maxFetchRetries = 3;
+    /** Хранить содержимое страниц сжатым; прежде сохранённые страницы читаются в любом режиме. */
+    private boolean compressContent = false;
+    /** Что хранится в содержимом страницы: HTML целиком или только заголовок и текст. */
+    private ContentStorageMode contentMode = ContentStorageMode.HTML;
+    /** Где хранится содержимое страниц: в базе или в файлах сегментов. */
+    private ContentStoreType contentStore = ContentStoreType.DATABASE;
+    /** Каталог файлов сегментов с содержимым страниц. */
+    private String contentStoreDir = "content";
+    /** Размер файла сегмента, после которого начинается следующий, байт. */
+    private long contentSegmentSize = 256L * 1024 * 1024;
+    /** Сколько словоформ с найденными леммами держится в памяти; 0 — без кэша. */
+    private int wordFormCacheSize = 200_000;
+    /** Хранить в строках индекса вхождения лемм со смещениями в тексте страницы. */
+    private boolean storeLemmaPositions = true;
+    /** Сколько страниц записывается в базу одним батчем. */
+    private int writerBatchSize = 100;
+    /** Размер очереди на запись; при её заполнении обход приостанавливается. */
+    private int writerQueueCapacity = 1000;
+    /** Как часто обновляется время статуса сайтов во время обхода, мс. */
+    private long statusTimeInterval = 1000;
+    /** Число потоков лемматизации; 0 — по числу ядер. */
+    private int indexerThreads = 0;
+    /** Сколько страниц записывается в таблицы lemma и index за один раз. */
+    private int indexerBatchSize = 200;
+    /** Каталог для контрольных точек обхода. */
+    private String checkpointDir = "checkpoints";
+    /** Как часто сохраняются контрольные точки, мс; 0 — только при остановке. */
+    private long checkpointInterval = 60000;
+    /** Продолжать остановленный или прерванный обход с контрольной точки. */
+    private boolean resume = true;
+    /** Соблюдать правила и Crawl-delay из robots.txt. */
+    private boolean respectRobots = true;
+    /** Заполнять очередь адресами из sitemap до обхода по ссылкам. */
+    private boolean useSitemaps = true;
+    /** Сколько файлов sitemap одного сайта читается не больше. */
+    private int maxSitemaps = 200;
+    /** Параметры запроса, значимые для всех сайтов; остальные параметры отбрасываются. */
+    private List<String> significantParams = List.of("page");
+    /** Не сохранять и не индексировать страницы, почти совпадающие с уже сохранёнными. */
+    private boolean detectNearDuplicates = true;
+    /** Во скольких битах SimHash могут отличаться почти одинаковые страницы. */
+    private int nearDuplicateDistance = 3;
+    /** Страницы с меньшим числом слов на почти одинаковые не проверяются. */
+    private int nearDuplicateMinWords = 50;
+    /** Как хранятся встреченные при обходе адреса. */
+    private SeenFilterMode seenFilter = SeenFilterMode.EXACT;
+    /** На сколько адресов одного сайта рассчитан фильтр Блума. */
+    private long seenFilterExpectedUrls = 5_000_000;
+    /** Допустимая доля ложных срабатываний фильтра Блума, то есть пропущенных новых адресов. */
+    private double seenFilterFalsePositiveRate = 0.001;
+
+    public long getCrawlDelay(Site site) {
+        return site.getCrawlDelay() != null ? site.getCrawlDelay() : crawlDelay;
+    }
+
+    public double getWeight(Site site) {
+        return site.getWeight() != null && site.getWeight() > 0 ? site.getWeight() : 1;
+    }
+
+    /**
+     * @return сколько страниц сайта может загружаться одновременно; 0 — без ограничения
+     */
+    public int getMaxConcurrency(Site site) {
+        if (site.getMaxConcurrency() != null) {
+            return site.getMaxConcurrency();
+        }
+        return executionMode == CrawlExecutionMode.VIRTUAL_THREADS ? maxFetchesPerSite : 0;
+    }
 }
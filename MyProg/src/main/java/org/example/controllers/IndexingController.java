@@ -3,6 +3,7 @@ package org.example.controllers;
 
 import lombok.RequiredArgsConstructor;
 import org.example.dto.statistics.Response;
+import org.example.services.IndexPageResult;
 import org.example.services.IndexingService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -44,13 +45,15 @@ public class IndexingController {
 
     @PostMapping("/indexPage")
     public ResponseEntity<Response> indexPage(@RequestParam String url) {
-        boolean result = indexingService.indexPage(url);
+        IndexPageResult result = indexingService.indexPage(url);
 
         Response response = new Response();
-        response.setResult(result);
+        response.setResult(result == IndexPageResult.INDEXED);
 
-        if (!result) {
+        if (result == IndexPageResult.OUTSIDE_SITES) {
             response.setError("Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+        } else if (result == IndexPageResult.NOT_HTML) {
+            response.setError("Страница не является HTML-документом и не может быть проиндексирована");
         }
 
         return ResponseEntity.ok(response);
@@ -23,4 +23,9 @@ public class Index {
 
     @Column(nullable = false)
     private float rank;
+
+    /** Вхождения леммы в тексте страницы, см. {@link org.example.services.PositionList#encode()}. */
+    @Lob
+    @Column(name = "positions", columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
 }
\ No newline at end of file
@@ -5,7 +5,12 @@ import lombok.Getter;
 import lombok.Setter;
 
 @Entity
-@Table(name = "lemma")
+@Table(name = "lemma",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uc_lemma_site_lemma",
+                columnNames = {"site_id", "lemma"}
+        )
+)
 @Getter
 @Setter
 public class Lemma {
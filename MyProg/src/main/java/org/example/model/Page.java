@@ -3,6 +3,7 @@ package org.example.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.example.services.PageContentCodec;
 
 @Entity
 @Table(name = "page",
@@ -14,6 +15,10 @@ import lombok.Setter;
 @Getter
 @Setter
 public class Page {
+
+    /** Длина колонки {@code page.path}. */
+    public static final int MAX_PATH_LENGTH = 500;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
@@ -22,13 +27,49 @@ public class Page {
     @JoinColumn(name = "site_id", nullable = false, foreignKey = @ForeignKey(name = "fk_page_site"))
     private Site site;
 
-    @Column(name = "path", nullable = false, length = 500)
+    @Column(name = "path", nullable = false, length = MAX_PATH_LENGTH)
     private String path;
 
     @Column(nullable = false)
     private int code;
 
+    /**
+     * Хранится сжатым, если включено {@code indexing-settings.compress-content}.
+     * Пусто, если содержимое записано в файлы сегментов.
+     */
     @Lob
+    @Convert(converter = PageContentCodec.class)
     @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
     private String content;
+
+    /** Заголовок и видимый текст, извлечённые при обходе; {@code null} у страниц, сохранённых раньше. */
+    @Column(name = "title", length = 500)
+    private String title;
+
+    @Lob
+    @Convert(converter = PageContentCodec.class)
+    @Column(name = "text", columnDefinition = "MEDIUMTEXT")
+    private String text;
+
+    @Column(name = "etag", length = 255)
+    private String etag;
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "simhash")
+    private Long simhash;
+
+    /** Сегмент, смещение и длина содержимого вне базы; {@code null}, если содержимое в колонке content. */
+    @Column(name = "content_segment")
+    private Integer contentSegment;
+
+    @Column(name = "content_offset")
+    private Long contentOffset;
+
+    @Column(name = "content_length")
+    private Integer contentLength;
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package org.example.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Адрес страницы, почти совпадающей с уже сохранённой. Такая страница
+ * не хранится и не индексируется, вместо неё записывается ссылка
+ * на сохранённую.
+ */
+@Entity
+@Table(name = "page_alias",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uc_page_alias_site_path",
+                columnNames = {"site_id", "path"}
+        )
+)
+@Getter
+@Setter
+public class PageAlias {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "site_id", nullable = false, foreignKey = @ForeignKey(name = "fk_page_alias_site"))
+    private Site site;
+
+    @Column(name = "path", nullable = false, length = 500)
+    private String path;
+
+    /** Адрес сохранённой страницы, копией которой является эта. */
+    @Column(name = "canonical_path", nullable = false, length = 500)
+    private String canonicalPath;
+
+    /** Расстояние Хэмминга между SimHash страниц. */
+    @Column(nullable = false)
+    private int distance;
+}
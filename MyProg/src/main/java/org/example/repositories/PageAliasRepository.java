@@ -0,0 +1,30 @@
+package org.example.repositories;
+
+import org.example.model.PageAlias;
+import org.example.model.Site;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface PageAliasRepository extends JpaRepository<PageAlias, Integer> {
+
+    @Query(value = "INSERT INTO page_alias (site_id, path, canonical_path, distance) " +
+            "VALUES (:siteId, :path, :canonicalPath, :distance) " +
+            "ON DUPLICATE KEY UPDATE canonical_path = VALUES(canonical_path), distance = VALUES(distance)",
+            nativeQuery = true)
+    @Modifying
+    @Transactional
+    void upsert(@Param("siteId") int siteId, @Param("path") String path,
+                @Param("canonicalPath") String canonicalPath, @Param("distance") int distance);
+
+    List<PageAlias> findBySite(Site site);
+
+    @Query("SELECT COUNT(a) FROM PageAlias a WHERE a.site = :site")
+    int countBySite(@Param("site") Site site);
+}
@@ -40,6 +40,9 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
 
     List<Page> findBySite(Site site);
 
+    @Query("SELECT p.path, p.etag, p.lastModified, p.contentHash, p.simhash FROM Page p WHERE p.site = :site")
+    List<Object[]> findValidatorsBySite(@Param("site") Site site);
+
     @Query("SELECT COUNT(p) FROM Page p WHERE p.site = :site")
     int countBySite(Site site);
 
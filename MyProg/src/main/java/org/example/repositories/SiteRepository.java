@@ -13,6 +13,8 @@ import java.util.Optional;
 public interface SiteRepository extends JpaRepository<Site, Integer> {
     Optional<Site> findByUrl(String url);
 
+    Optional<Site> findFirstByUrlOrderByIdDesc(String url);
+
     @Query("SELECT s FROM Site s WHERE s.status = 'INDEXING'")
     List<Site> findIndexingSites();
 
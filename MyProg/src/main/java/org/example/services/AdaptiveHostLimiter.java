@@ -0,0 +1,127 @@
+package org.example.services;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подстройка скорости обхода одного хоста по схеме AIMD. Пока 95-й
+ * перцентиль времени загрузки и доля ошибок в окне последних запросов
+ * в норме, число одновременных запросов растёт на единицу, а частота
+ * запросов — на {@link #RATE_STEP} в секунду. При превышении порогов оба
+ * значения уменьшаются вдвое; при ответах 429 и 503 и тайм-аутах — сразу,
+ * не дожидаясь конца окна, с паузой по Retry-After.
+ * <p>
+ * Не потокобезопасен, синхронизация обеспечивается планировщиком.
+ */
+public class AdaptiveHostLimiter {
+
+    /** На сколько запросов в секунду растёт частота после удачного окна. */
+    private static final double RATE_STEP = 0.5;
+    /** Интервал, от которого считается замедление хоста без паузы между запросами. */
+    private static final long MIN_BACKOFF_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int maxConcurrency;
+    private final long targetLatencyNanos;
+    private final double maxErrorRate;
+    private final long maxIntervalNanos;
+    private final long[] latencies;
+
+    private long minIntervalNanos;
+    private int limit = 1;
+    private int inFlight;
+    private int samples;
+    private int errors;
+    private long pausedUntilNanos;
+
+    public AdaptiveHostLimiter(int maxConcurrency, long targetLatencyMillis, double maxErrorRate,
+                               int window, long minIntervalMillis, long maxIntervalMillis) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.maxErrorRate = maxErrorRate;
+        this.latencies = new long[Math.max(1, window)];
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+        this.maxIntervalNanos = Math.max(minIntervalNanos, TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis));
+    }
+
+    /**
+     * @return сколько наносекунд осталось до возможности начать запрос,
+     * {@code 0} если можно сейчас, {@code -1} если заняты все слоты хоста
+     */
+    public long nanosUntilAvailable(long nowNanos) {
+        if (nowNanos < pausedUntilNanos) {
+            return pausedUntilNanos - nowNanos;
+        }
+        return inFlight < limit ? 0 : -1;
+    }
+
+    public void onStart() {
+        inFlight++;
+    }
+
+    /**
+     * Учитывает итог запроса.
+     *
+     * @param intervalNanos текущий интервал между запросами к хосту
+     * @return новый интервал между запросами к хосту
+     */
+    public long onComplete(FetchOutcome outcome, long intervalNanos, long nowNanos) {
+        inFlight = Math.max(0, inFlight - 1);
+        if (outcome.isSkipped()) {
+            return intervalNanos;
+        }
+
+        if (outcome.isOverloaded()) {
+            if (outcome.getRetryAfterMillis() > 0) {
+                pausedUntilNanos = Math.max(pausedUntilNanos,
+                        nowNanos + TimeUnit.MILLISECONDS.toNanos(outcome.getRetryAfterMillis()));
+            }
+            resetWindow();
+            return backOff(intervalNanos);
+        }
+
+        latencies[samples++] = outcome.getLatencyNanos();
+        if (outcome.isError()) {
+            errors++;
+        }
+        if (samples < latencies.length) {
+            return intervalNanos;
+        }
+
+        double errorRate = (double) errors / samples;
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        long p95 = sorted[Math.min(samples - 1, (int) Math.ceil(samples * 0.95) - 1)];
+        resetWindow();
+
+        if (errorRate > maxErrorRate || p95 > targetLatencyNanos) {
+            return backOff(intervalNanos);
+        }
+
+        limit = Math.min(maxConcurrency, limit + 1);
+        double rate = intervalNanos > 0 ? TimeUnit.SECONDS.toNanos(1) / (double) intervalNanos : Double.MAX_VALUE;
+        long faster = (long) (TimeUnit.SECONDS.toNanos(1) / (rate + RATE_STEP));
+        return Math.max(minIntervalNanos, Math.min(intervalNanos, faster));
+    }
+
+    /**
+     * Поднимает нижнюю границу интервала между запросами, например по Crawl-delay.
+     */
+    public void raiseMinInterval(long intervalNanos) {
+        minIntervalNanos = Math.max(minIntervalNanos, intervalNanos);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private long backOff(long intervalNanos) {
+        limit = Math.max(1, limit / 2);
+        long slower = Math.max(MIN_BACKOFF_INTERVAL_NANOS, Math.max(minIntervalNanos, intervalNanos)) * 2;
+        return Math.max(minIntervalNanos, Math.min(maxIntervalNanos, slower));
+    }
+
+    private void resetWindow() {
+        samples = 0;
+        errors = 0;
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.services;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для встреченных адресов. Биты хранятся в массиве
+ * {@code long}, поэтому память на сайт фиксирована и задаётся ожидаемым
+ * числом адресов и допустимой долей ложных срабатываний. Ложное
+ * срабатывание означает, что новый адрес принят за встреченный и не будет
+ * загружен; точно сверяются только страницы прошлого обхода
+ * (см. {@link CrawlFrontier}).
+ */
+public class BloomSeenUrlFilter implements SeenUrlFilter {
+
+    private static final int MAX_HASHES = 16;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomSeenUrlFilter(long expectedUrls, double falsePositiveRate) {
+        this(new long[longsFor(optimalBitCount(expectedUrls, falsePositiveRate))],
+                optimalHashCount(expectedUrls, optimalBitCount(expectedUrls, falsePositiveRate)));
+    }
+
+    /**
+     * Восстанавливает фильтр из сохранённых битов.
+     */
+    public BloomSeenUrlFilter(long[] words, int hashCount) {
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words.length * Long.SIZE;
+        this.hashCount = hashCount;
+    }
+
+    @Override
+    public boolean add(String url) {
+        long hash = hash64(url);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+        boolean changed = false;
+        long combined = h1;
+        for (int i = 0; i < hashCount; i++) {
+            changed |= setBit(Long.remainderUnsigned(combined, bitCount));
+            combined += h2;
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long hash = hash64(url);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+        long combined = h1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(combined, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Копия битов фильтра для сохранения в контрольной точке.
+     */
+    public long[] toLongArray() {
+        long[] words = new long[bits.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = bits.get(i);
+        }
+        return words;
+    }
+
+    /**
+     * Добавляет в фильтр все адреса другого фильтра того же размера.
+     *
+     * @return {@code false}, если размеры фильтров не совпадают
+     */
+    public boolean merge(long[] words, int otherHashCount) {
+        if (words.length != bits.length() || otherHashCount != hashCount) {
+            return false;
+        }
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            if (word != 0) {
+                bits.getAndAccumulate(i, word, (a, b) -> a | b);
+            }
+        }
+        return true;
+    }
+
+    private boolean setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current = bits.get(word);
+        while ((current & mask) == 0) {
+            long witness = bits.compareAndExchange(word, current, current | mask);
+            if (witness == current) {
+                return true;
+            }
+            current = witness;
+        }
+        return false;
+    }
+
+    private static long hash64(String url) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash ^ url.length();
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long optimalBitCount(long expectedUrls, double falsePositiveRate) {
+        double rate = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long bits = (long) Math.ceil(-Math.max(1, expectedUrls) * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        return Math.max(Long.SIZE, bits);
+    }
+
+    private static int optimalHashCount(long expectedUrls, long bitCount) {
+        int hashes = (int) Math.round((double) bitCount / Math.max(1, expectedUrls) * Math.log(2));
+        return Math.max(1, Math.min(MAX_HASHES, hashes));
+    }
+
+    private static int longsFor(long bitCount) {
+        long words = (bitCount + Long.SIZE - 1) / Long.SIZE;
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Слишком большой фильтр встреченных адресов");
+        }
+        return (int) words;
+    }
+}
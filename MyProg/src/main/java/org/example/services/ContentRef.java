@@ -0,0 +1,15 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Место содержимого страницы в хранилище вне базы.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ContentRef {
+    private final int segment;
+    private final long offset;
+    private final int length;
+}
@@ -0,0 +1,24 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+
+/**
+ * Сохранённое состояние обхода сайта: адреса, которые ещё предстоит
+ * загрузить, уже встреченные адреса и счётчики.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CrawlCheckpoint {
+    private final int siteId;
+    private final String siteUrl;
+    private final int discovered;
+    private final int processed;
+    private final Collection<String> pendingUrls;
+    private final Collection<String> seenUrls;
+    /** Биты фильтра Блума встреченных адресов; {@code null}, если сохранены сами адреса. */
+    private final long[] seenFilterBits;
+    private final int seenFilterHashes;
+}
@@ -0,0 +1,170 @@
+package org.example.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.SitesList;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Хранилище контрольных точек обхода. Для каждого сайта из настроек
+ * ведётся один сжатый файл, который перезаписывается атомарно.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CrawlCheckpointStore {
+
+    private static final String PENDING_SECTION = "pending";
+    private static final String SEEN_SECTION = "seen";
+    private static final String SEEN_BLOOM_SECTION = "seen-bloom";
+
+    private final SitesList sitesList;
+
+    public void save(CrawlFrontier frontier) throws IOException {
+        String siteUrl = frontier.getSite().getUrl();
+        Path file = fileFor(siteUrl);
+        Files.createDirectories(file.getParent());
+
+        // Встреченные адреса читаются раньше очереди: адрес, поставленный
+        // в очередь между чтениями, попадёт в очередь контрольной точки.
+        SeenUrlFilter seen = frontier.getSeenFilter();
+        long[] bloomBits = seen instanceof BloomSeenUrlFilter bloom ? bloom.toLongArray() : null;
+        List<String> seenUrls = seen instanceof ExactSeenUrlFilter exact ? new ArrayList<>(exact.view()) : List.of();
+        List<String> pending = frontier.pendingSnapshot();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8))) {
+            writer.write("site-id\t" + frontier.getSite().getId() + "\n");
+            writer.write("site-url\t" + siteUrl + "\n");
+            writer.write("discovered\t" + frontier.getDiscoveredCount() + "\n");
+            writer.write("processed\t" + frontier.getProcessedCount() + "\n");
+            writer.write(PENDING_SECTION + "\n");
+            for (String url : pending) {
+                writer.write(url);
+                writer.write('\n');
+            }
+            if (bloomBits != null) {
+                writeBloom(writer, bloomBits, ((BloomSeenUrlFilter) seen).getHashCount());
+            } else {
+                writer.write(SEEN_SECTION + "\n");
+                for (String url : seenUrls) {
+                    writer.write(url);
+                    writer.write('\n');
+                }
+            }
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Сохранена контрольная точка {}: в очереди {}", siteUrl, pending.size());
+    }
+
+    /**
+     * @return контрольная точка сайта или {@code null}, если её нет или она повреждена
+     */
+    public CrawlCheckpoint load(String siteUrl) {
+        Path file = fileFor(siteUrl);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            int siteId = Integer.parseInt(value(reader.readLine()));
+            String storedUrl = value(reader.readLine());
+            int discovered = Integer.parseInt(value(reader.readLine()));
+            int processed = Integer.parseInt(value(reader.readLine()));
+
+            if (!siteUrl.equals(storedUrl) || !PENDING_SECTION.equals(reader.readLine())) {
+                return null;
+            }
+
+            List<String> pending = new ArrayList<>();
+            List<String> seen = new ArrayList<>();
+            List<String> target = pending;
+            long[] bloomBits = null;
+            int bloomHashes = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (target == pending && SEEN_SECTION.equals(line)) {
+                    target = seen;
+                } else if (target == pending && line.startsWith(SEEN_BLOOM_SECTION + "\t")) {
+                    bloomHashes = Integer.parseInt(value(line));
+                    bloomBits = readBloomBits(reader.readLine());
+                    break;
+                } else if (!line.isEmpty()) {
+                    target.add(line);
+                }
+            }
+
+            return new CrawlCheckpoint(siteId, storedUrl, discovered, processed, pending, seen,
+                    bloomBits, bloomHashes);
+
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось прочитать контрольную точку {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    public void delete(String siteUrl) {
+        try {
+            Files.deleteIfExists(fileFor(siteUrl));
+        } catch (IOException e) {
+            log.warn("Не удалось удалить контрольную точку сайта {}: {}", siteUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает биты фильтра Блума одной строкой в Base64 после заголовка
+     * с числом хэш-функций.
+     */
+    private static void writeBloom(BufferedWriter writer, long[] words, int hashCount) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(words.length * Long.BYTES);
+        buffer.asLongBuffer().put(words);
+
+        writer.write(SEEN_BLOOM_SECTION + "\t" + hashCount + "\n");
+        writer.write(Base64.getEncoder().encodeToString(buffer.array()));
+        writer.write('\n');
+    }
+
+    private static long[] readBloomBits(String line) {
+        if (line == null) {
+            throw new IllegalStateException("Неожиданный конец файла");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(line));
+        long[] words = new long[buffer.remaining() / Long.BYTES];
+        buffer.asLongBuffer().get(words);
+        return words;
+    }
+
+    private Path fileFor(String siteUrl) {
+        String name = PolitenessScheduler.hostOf(siteUrl).replaceAll("[^a-zA-Z0-9.-]", "_")
+                + "-" + Integer.toHexString(siteUrl.hashCode()) + ".ckpt.gz";
+        return Paths.get(sitesList.getCheckpointDir()).resolve(name);
+    }
+
+    private static String value(String line) {
+        if (line == null) {
+            throw new IllegalStateException("Неожиданный конец файла");
+        }
+        int tab = line.indexOf('\t');
+        return tab >= 0 ? line.substring(tab + 1) : line;
+    }
+}
@@ -0,0 +1,315 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.example.model.Site;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Граница обхода одного сайта: общее для всех задач обхода множество
+ * уже встреченных адресов и очередь адресов, ожидающих загрузки.
+ * Вместо накопления результатов ведутся только счётчики.
+ * <p>
+ * Срабатывание неточного множества встреченных адресов считается верным:
+ * новый адрес теряется с заданной в настройках малой вероятностью, зато
+ * проверка не обращается к базе и не держит адреса строками. Точно
+ * сверяются только страницы прошлого обхода: они должны быть загружены
+ * заново, даже если фильтр уже восстановлен из контрольной точки.
+ */
+public class CrawlFrontier {
+
+    @Getter
+    private final Site site;
+
+    private final SeenUrlFilter seenUrls;
+    /** Признаки версий страниц из прошлого обхода; используются в инкрементальном режиме. */
+    private final Map<String, PageValidators> knownPages = new ConcurrentHashMap<>();
+    private final Queue<String> pendingUrls = new ConcurrentLinkedQueue<>();
+    private final Set<String> inFlightUrls = ConcurrentHashMap.newKeySet();
+    /**
+     * Страницы прошлого обхода, уже поставленные в очередь в этом;
+     * ведутся только при неточном множестве встреченных адресов.
+     */
+    private final Set<String> offeredKnownPages = ConcurrentHashMap.newKeySet();
+    /** Страницы, не сохранённые как копии канонического адреса, и их канонические адреса. */
+    private final Map<String, String> canonicalRedirects = new HashMap<>();
+
+    /** Сколько раз адрес возвращался в очередь из-за перегрузки хоста. */
+    private final Map<String, Integer> retries = new ConcurrentHashMap<>();
+    /**
+     * Сколько возвратов адреса в очередь ещё не закрыто вызовом
+     * {@link #complete(String)}; такой вызов не считается обработкой.
+     */
+    private final Map<String, Integer> requeued = new ConcurrentHashMap<>();
+
+    /** Адреса в очереди плюс адреса в обработке; ноль означает, что обход завершён. */
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final AtomicInteger discovered = new AtomicInteger();
+    private final AtomicInteger processed = new AtomicInteger();
+
+    /** Ограничение числа одновременно загружаемых страниц сайта; {@code null} — без ограничения. */
+    private final Semaphore fetchSlots;
+
+    @Getter
+    @Setter
+    private volatile RobotsTxt robots = RobotsTxt.ALLOW_ALL;
+
+    /** Отпечатки сохранённых страниц сайта; {@code null}, если почти одинаковые страницы не ищутся. */
+    @Getter
+    @Setter
+    private volatile NearDuplicateIndex duplicateIndex;
+
+    /** Время окончания прошлого обхода сайта; {@code null}, если сайт обходится впервые. */
+    @Getter
+    @Setter
+    private volatile Instant previousCrawlTime;
+
+    public CrawlFrontier(Site site) {
+        this(site, 0);
+    }
+
+    public CrawlFrontier(Site site, int maxConcurrentFetches) {
+        this(site, maxConcurrentFetches, new ExactSeenUrlFilter());
+    }
+
+    public CrawlFrontier(Site site, int maxConcurrentFetches, SeenUrlFilter seenUrls) {
+        this.site = site;
+        this.seenUrls = seenUrls;
+        this.fetchSlots = maxConcurrentFetches > 0 ? new Semaphore(maxConcurrentFetches) : null;
+    }
+
+    /**
+     * Ставит адрес в очередь, если он ещё не встречался.
+     *
+     * @return {@code true}, если адрес новый
+     */
+    public boolean offer(String url) {
+        if (!robots.isAllowed(url) || !markNew(url)) {
+            return false;
+        }
+
+        unfinished.incrementAndGet();
+        discovered.incrementAndGet();
+        enqueue(url);
+        return true;
+    }
+
+    /**
+     * Отмечает адрес встреченным. Страница прошлого обхода считается новой
+     * при первом предложении в этом обходе, даже если неточное множество
+     * уже сработало на неё.
+     */
+    private boolean markNew(String url) {
+        boolean added = seenUrls.add(url);
+        if (!seenUrls.isExact() && knownPages.containsKey(url)) {
+            return offeredKnownPages.add(url);
+        }
+        return added;
+    }
+
+    private void enqueue(String url) {
+        pendingUrls.offer(url);
+    }
+
+    /**
+     * Забирает следующий адрес из очереди и занимает под него слот загрузки.
+     * После обработки адреса необходимо вызвать {@link #complete(String)}.
+     *
+     * @return адрес или {@code null}, если очередь пуста или все слоты заняты
+     */
+    public String poll() {
+        if (fetchSlots != null && !fetchSlots.tryAcquire()) {
+            return null;
+        }
+
+        String url = pendingUrls.poll();
+        if (url == null) {
+            if (fetchSlots != null) {
+                fetchSlots.release();
+            }
+            return null;
+        }
+
+        inFlightUrls.add(url);
+        return url;
+    }
+
+    /**
+     * Отмечает страницу прошлого обхода встреченной, не ставя её в очередь,
+     * и забывает признаки её версии: иначе ссылка на страницу всё равно
+     * поставила бы её в очередь.
+     *
+     * @return {@code false}, если страница уже стоит в очереди или загружена
+     */
+    public boolean skipKnownPage(String url) {
+        boolean added = seenUrls.add(url);
+        if (!seenUrls.isExact()) {
+            added = offeredKnownPages.add(url);
+        }
+        if (added) {
+            knownPages.remove(url);
+        }
+        return added;
+    }
+
+    /**
+     * Не даёт обходу завершиться, пока идёт работа вне очереди, например
+     * чтение sitemap. Каждый вызов должен сопровождаться {@link #release()}.
+     */
+    public void hold() {
+        unfinished.incrementAndGet();
+    }
+
+    public void release() {
+        unfinished.decrementAndGet();
+    }
+
+    /**
+     * Возвращает обрабатываемый адрес в конец очереди, чтобы загрузить его
+     * позже. Адрес остаётся в обработке до вызова {@link #complete(String)},
+     * который в этом случае не увеличивает число обработанных страниц.
+     *
+     * @return {@code false}, если попытки исчерпаны
+     */
+    public boolean retryLater(String url, int maxRetries) {
+        if (retries.merge(url, 1, Integer::sum) > maxRetries) {
+            retries.remove(url);
+            return false;
+        }
+        requeued.merge(url, 1, Integer::sum);
+        unfinished.incrementAndGet();
+        enqueue(url);
+        return true;
+    }
+
+    /**
+     * Запоминает, что страница — копия канонического адреса и сохраняться
+     * не будет. Если цепочка канонических адресов возвращается к самой
+     * странице, сохранять её придётся: иначе ни одна страница цикла
+     * не попала бы в индекс.
+     *
+     * @return {@code false}, если канонический адрес ведёт по цепочке обратно к странице
+     */
+    public synchronized boolean redirectToCanonical(String url, String canonical) {
+        String target = canonical;
+        for (int steps = 0; target != null && steps <= canonicalRedirects.size(); steps++) {
+            if (target.equals(url)) {
+                return false;
+            }
+            target = canonicalRedirects.get(target);
+        }
+        canonicalRedirects.put(url, canonical);
+        return true;
+    }
+
+    public void addKnownPage(String url, PageValidators validators) {
+        knownPages.put(url, validators);
+    }
+
+    /**
+     * Возвращает признаки версии страницы из прошлого обхода и забывает их,
+     * так как каждая страница загружается один раз.
+     */
+    public PageValidators takeKnownPage(String url) {
+        return knownPages.remove(url);
+    }
+
+    public PageValidators getKnownPage(String url) {
+        return knownPages.get(url);
+    }
+
+    public boolean hasPending() {
+        return !pendingUrls.isEmpty();
+    }
+
+    /**
+     * Завершает обработку адреса, полученного из {@link #poll()}.
+     */
+    public void complete(String url) {
+        inFlightUrls.remove(url);
+        if (fetchSlots != null) {
+            fetchSlots.release();
+        }
+        Integer requeues = requeued.remove(url);
+        if (requeues == null) {
+            processed.incrementAndGet();
+        } else if (requeues > 1) {
+            requeued.merge(url, requeues - 1, Integer::sum);
+        }
+        unfinished.decrementAndGet();
+    }
+
+    public boolean isExhausted() {
+        return unfinished.get() == 0;
+    }
+
+    /**
+     * Восстанавливает состояние обхода из контрольной точки. Вызывается,
+     * пока очередь пуста и обход удерживается {@link #hold()}; адреса,
+     * запрещённые robots.txt, в очередь не возвращаются.
+     */
+    public void restore(CrawlCheckpoint checkpoint) {
+        discovered.set(checkpoint.getDiscovered());
+        processed.set(checkpoint.getProcessed());
+        if (checkpoint.getSeenFilterBits() != null) {
+            // Встреченные адреса сохранены фильтром Блума. Если фильтр
+            // другого вида или размера, адреса восстановить нельзя; уже
+            // загруженные страницы тогда будут сверены по хэшу содержимого.
+            if (seenUrls instanceof BloomSeenUrlFilter bloom) {
+                bloom.merge(checkpoint.getSeenFilterBits(), checkpoint.getSeenFilterHashes());
+            }
+        } else {
+            checkpoint.getSeenUrls().forEach(seenUrls::add);
+        }
+
+        // Страницы прошлого обхода, обработанные до остановки, сохранены
+        // заново и повторно не загружаются. При ложном срабатывании фильтра
+        // Блума страница, до которой прерванный обход не дошёл, останется
+        // с прежним индексом до следующего обхода.
+        Set<String> pending = new HashSet<>(checkpoint.getPendingUrls());
+        knownPages.keySet().removeIf(url -> !pending.contains(url) && seenUrls.contains(url));
+
+        for (String url : checkpoint.getPendingUrls()) {
+            markNew(url);
+            if (robots.isAllowed(url)) {
+                unfinished.incrementAndGet();
+                enqueue(url);
+            }
+        }
+    }
+
+    /**
+     * Адреса, которые ещё предстоит обработать: очередь и адреса в обработке.
+     * Очередь читается раньше адресов в обработке, чтобы адрес, перешедший
+     * из очереди в обработку во время чтения, не потерялся.
+     */
+    public List<String> pendingSnapshot() {
+        List<String> snapshot = new ArrayList<>(pendingUrls);
+        snapshot.addAll(inFlightUrls);
+        return snapshot;
+    }
+
+    public SeenUrlFilter getSeenFilter() {
+        return seenUrls;
+    }
+
+    public int getDiscoveredCount() {
+        return discovered.get();
+    }
+
+    public int getProcessedCount() {
+        return processed.get();
+    }
+}
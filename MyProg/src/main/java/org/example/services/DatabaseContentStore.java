@@ -0,0 +1,30 @@
+package org.example.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Хранилище по умолчанию: содержимое страниц остаётся в колонке
+ * {@code page.content}. Страницы, записанные раньше в файлы сегментов,
+ * этим хранилищем не читаются.
+ */
+@Component
+@ConditionalOnProperty(prefix = "indexing-settings", name = "content-store",
+        havingValue = "DATABASE", matchIfMissing = true)
+public class DatabaseContentStore implements PageContentStore {
+
+    @Override
+    public ContentRef write(String content) {
+        return null;
+    }
+
+    @Override
+    public String read(ContentRef ref) {
+        throw new IllegalStateException("Содержимое страницы хранится вне базы, " +
+                "а хранилище файлов сегментов не включено");
+    }
+
+    @Override
+    public void sync() {
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.services;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Точное множество встреченных адресов на основе {@link ConcurrentHashMap}.
+ */
+public class ExactSeenUrlFilter implements SeenUrlFilter {
+
+    private final Set<String> urls = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String url) {
+        return urls.add(url);
+    }
+
+    @Override
+    public boolean contains(String url) {
+        return urls.contains(url);
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    /**
+     * Представление множества только для чтения.
+     */
+    public Set<String> view() {
+        return Collections.unmodifiableSet(urls);
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Итог обращения к хосту при обработке адреса: код ответа, время
+ * загрузки и признаки перегрузки хоста. Используется для подстройки
+ * скорости обхода хоста.
+ */
+@Getter
+@RequiredArgsConstructor
+public class FetchOutcome {
+
+    /** Адрес обработан без запроса к хосту. */
+    public static final FetchOutcome SKIPPED = new FetchOutcome(0, 0, false, 0);
+
+    /** Код ответа; {@code -1}, если соединение не удалось. */
+    private final int code;
+    private final long latencyNanos;
+    private final boolean timedOut;
+    /** Пауза из заголовка Retry-After, мс; {@code 0}, если заголовка нет. */
+    private final long retryAfterMillis;
+
+    public static FetchOutcome timeout(long latencyNanos) {
+        return new FetchOutcome(-1, latencyNanos, true, 0);
+    }
+
+    public static FetchOutcome failure(long latencyNanos) {
+        return new FetchOutcome(-1, latencyNanos, false, 0);
+    }
+
+    public boolean isSkipped() {
+        return code == 0;
+    }
+
+    /**
+     * @return {@code true}, если хост явно не справляется: 429, 503 или тайм-аут
+     */
+    public boolean isOverloaded() {
+        return timedOut || code == 429 || code == 503;
+    }
+
+    public boolean isError() {
+        return isOverloaded() || code < 0 || code >= 500;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.services;
+
+/**
+ * Корзина токенов для одного хоста: один токен разрешает один запрос,
+ * токены восстанавливаются раз в заданный интервал. Не потокобезопасна,
+ * синхронизация обеспечивается планировщиком.
+ */
+public class HostTokenBucket {
+
+    private final int capacity;
+    private long refillIntervalNanos;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public HostTokenBucket(int capacity, long refillIntervalNanos, long nowNanos) {
+        this.capacity = Math.max(1, capacity);
+        this.refillIntervalNanos = Math.max(0, refillIntervalNanos);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * @return сколько наносекунд осталось до появления токена, {@code 0} если токен есть
+     */
+    public long nanosUntilAvailable(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * refillIntervalNanos);
+    }
+
+    public boolean tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public void setRefillIntervalNanos(long refillIntervalNanos, long nowNanos) {
+        refill(nowNanos);
+        this.refillIntervalNanos = Math.max(0, refillIntervalNanos);
+    }
+
+    public long getRefillIntervalNanos() {
+        return refillIntervalNanos;
+    }
+
+    private void refill(long nowNanos) {
+        if (refillIntervalNanos == 0) {
+            tokens = capacity;
+            lastRefillNanos = nowNanos;
+            return;
+        }
+
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + (double) elapsed / refillIntervalNanos);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Разбор HTML за один проход без построения DOM: собирает ссылки,
+ * заголовок, видимый текст и адрес из {@code <link rel="canonical">}.
+ * Текст и заголовок извлекает {@link HtmlTextExtractor}, а сканер
+ * получает от него атрибуты ссылок.
+ */
+public final class HtmlPageScanner implements HtmlTextExtractor.TagHandler {
+
+    private String baseUrl;
+    private final List<String> links = new ArrayList<>();
+    private String canonical;
+    private boolean baseSeen;
+
+    private HtmlPageScanner(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * @param baseUrl адрес страницы, относительно которого разрешаются ссылки
+     */
+    public static ScannedPage scan(String html, String baseUrl) {
+        HtmlPageScanner scanner = new HtmlPageScanner(baseUrl);
+        HtmlTextExtractor.ExtractedText extracted = HtmlTextExtractor.extract(html, scanner);
+        return new ScannedPage(extracted.getTitle(), extracted.getText(), scanner.links, scanner.canonical);
+    }
+
+    @Override
+    public boolean wantsAttributes(String tag) {
+        return switch (tag) {
+            case "a", "area", "base", "link" -> true;
+            default -> false;
+        };
+    }
+
+    @Override
+    public void startTag(String tag, Map<String, String> attributes) {
+        String href = attributes.get("href");
+        if (href == null) {
+            return;
+        }
+        href = href.trim();
+
+        switch (tag) {
+            case "a", "area" -> {
+                String absolute = resolve(href);
+                if (!absolute.isEmpty()) {
+                    links.add(absolute);
+                }
+            }
+            case "base" -> {
+                if (!baseSeen) {
+                    baseSeen = true;
+                    String absolute = resolve(href);
+                    if (!absolute.isEmpty()) {
+                        baseUrl = absolute;
+                    }
+                }
+            }
+            case "link" -> {
+                String rel = attributes.get("rel");
+                if (canonical == null && rel != null && rel.toLowerCase(Locale.ROOT).contains("canonical")) {
+                    String absolute = resolve(href);
+                    if (!absolute.isEmpty()) {
+                        canonical = absolute;
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private String resolve(String href) {
+        if (href.isEmpty() || baseUrl == null) {
+            return href;
+        }
+        return StringUtil.resolve(baseUrl, href);
+    }
+
+    /**
+     * Результат разбора страницы.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class ScannedPage {
+        private final String title;
+        private final String text;
+        /** Абсолютные адреса ссылок в порядке появления. */
+        private final List<String> links;
+        /** Адрес из {@code <link rel="canonical">} или {@code null}. */
+        private final String canonical;
+    }
+}
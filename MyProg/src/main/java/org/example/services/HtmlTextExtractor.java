@@ -0,0 +1,466 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.nodes.Entities;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Извлечение видимого текста из HTML за один линейный проход по символам
+ * без регулярных выражений и без построения DOM. Содержимое
+ * {@code script}, {@code style}, {@code noscript}, {@code template}
+ * и комментарии пропускаются, сущности раскодируются, пробельные символы
+ * схлопываются в один пробел. Заголовок из {@code <title>}, а без него —
+ * текст первого {@code <h1>}, возвращается отдельно.
+ * <p>
+ * Атрибуты тегов разбираются, только если их запросил {@link TagHandler}.
+ */
+public final class HtmlTextExtractor {
+
+    /**
+     * Получает открывающие теги во время разбора.
+     */
+    public interface TagHandler {
+        /**
+         * @return {@code true}, если нужны атрибуты этого тега
+         */
+        boolean wantsAttributes(String tag);
+
+        /**
+         * @param attributes атрибуты с именами в нижнем регистре и раскодированными значениями
+         */
+        void startTag(String tag, Map<String, String> attributes);
+    }
+
+    private static final Set<String> SKIPPED_ELEMENTS = Set.of(
+            "script", "style", "noscript", "template", "svg", "iframe", "object"
+    );
+
+    /** Элементы, на границе которых в тексте ставится пробел. */
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+            "address", "article", "aside", "blockquote", "br", "dd", "div", "dl", "dt",
+            "fieldset", "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6",
+            "header", "hr", "li", "main", "nav", "ol", "option", "p", "pre", "section",
+            "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul", "button", "label", "img"
+    );
+
+    private static final int MAX_ENTITY_LENGTH = 32;
+
+    /** Частые сущности с «;», которые раскодируются без поиска в таблице jsoup. */
+    private static final String[] COMMON_ENTITIES = {"amp;", "nbsp;", "lt;", "gt;", "quot;", "apos;"};
+    private static final char[] COMMON_ENTITY_CHARS = {'&', '\u00A0', '<', '>', '"', '\''};
+
+    private final CharSequence html;
+    private final int length;
+    private final TagHandler handler;
+    private int pos;
+
+    private final StringBuilder text;
+    private String title;
+    /** Текст первого непустого {@code <h1>}. */
+    private String heading;
+    /** Начало текста открытого {@code <h1>} или {@code -1}. */
+    private int headingStart = -1;
+
+    private HtmlTextExtractor(CharSequence html, TagHandler handler) {
+        this.html = html;
+        this.length = html.length();
+        this.handler = handler;
+        this.text = new StringBuilder(Math.min(length, 1 << 16));
+    }
+
+    public static ExtractedText extract(CharSequence html) {
+        return extract(html, null);
+    }
+
+    public static ExtractedText extract(CharSequence html, TagHandler handler) {
+        HtmlTextExtractor extractor = new HtmlTextExtractor(html, handler);
+        extractor.run();
+        String title = extractor.title != null && !extractor.title.isEmpty() ? extractor.title : extractor.heading;
+        return new ExtractedText(title != null ? title : "", extractor.text.toString().trim());
+    }
+
+    /**
+     * Раскодирует сущности в строке; строка без {@code &} возвращается как есть.
+     */
+    public static String decodeEntities(String value, boolean inAttribute) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c == '&') {
+                i = decodeEntity(value, i, inAttribute, result);
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    private void run() {
+        StringBuilder entity = new StringBuilder(2);
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (c == '<') {
+                readMarkup();
+            } else if (c == '&') {
+                entity.setLength(0);
+                pos = decodeEntity(html, pos, false, entity);
+                for (int i = 0; i < entity.length(); i++) {
+                    appendCollapsed(entity.charAt(i));
+                }
+            } else if (isSpace(c)) {
+                appendCollapsed(c);
+                pos++;
+            } else {
+                // Обычный текст добавляется целыми отрезками до ближайшей разметки или пробела.
+                int start = pos;
+                do {
+                    pos++;
+                } while (pos < length && (c = html.charAt(pos)) != '<' && c != '&' && !isSpace(c));
+                text.append(html, start, pos);
+            }
+        }
+    }
+
+    private void readMarkup() {
+        if (startsWith("<!--", pos)) {
+            int end = indexOf("-->", pos + 4);
+            pos = end < 0 ? length : end + 3;
+            return;
+        }
+
+        char next = pos + 1 < length ? html.charAt(pos + 1) : 0;
+        if (next == '!' || next == '?') {
+            skipPast('>');
+            return;
+        }
+
+        boolean closing = next == '/';
+        int nameStart = pos + (closing ? 2 : 1);
+        int nameEnd = nameStart;
+        while (nameEnd < length && isNameChar(html.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        if (nameEnd == nameStart || !Character.isLetter(html.charAt(nameStart))) {
+            // Одиночный «<» в тексте.
+            appendCollapsed('<');
+            pos++;
+            return;
+        }
+
+        String name = html.subSequence(nameStart, nameEnd).toString().toLowerCase(Locale.ROOT);
+        pos = nameEnd;
+
+        if (closing) {
+            skipPast('>');
+            if (name.equals("h1") && headingStart >= 0) {
+                String value = text.substring(Math.min(headingStart, text.length())).trim();
+                heading = value.isEmpty() ? null : value;
+                headingStart = -1;
+            }
+            separate(name);
+            return;
+        }
+
+        boolean wantsAttributes = handler != null && handler.wantsAttributes(name);
+        Map<String, String> attributes = readAttributes(wantsAttributes);
+        if (wantsAttributes) {
+            handler.startTag(name, attributes);
+        }
+
+        if (name.equals("title")) {
+            int start = pos;
+            int end = skipRawText(name);
+            if (title == null) {
+                StringBuilder collapsed = new StringBuilder();
+                collapseInto(collapsed, decodeEntities(html.subSequence(start, end).toString(), false));
+                title = collapsed.toString().trim();
+            }
+        } else if (SKIPPED_ELEMENTS.contains(name)) {
+            skipRawText(name);
+        }
+        separate(name);
+        if (name.equals("h1") && heading == null) {
+            headingStart = text.length();
+        }
+    }
+
+    /**
+     * Читает атрибуты открывающего тега до {@code >}.
+     *
+     * @param collect собирать ли атрибуты; иначе они только пропускаются
+     */
+    private Map<String, String> readAttributes(boolean collect) {
+        Map<String, String> attributes = collect ? new HashMap<>() : null;
+
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (c == '>') {
+                pos++;
+                break;
+            }
+            if (Character.isWhitespace(c) || c == '/') {
+                pos++;
+                continue;
+            }
+
+            int attrStart = pos;
+            while (pos < length && !Character.isWhitespace(html.charAt(pos))
+                    && html.charAt(pos) != '=' && html.charAt(pos) != '>') {
+                pos++;
+            }
+            int attrEnd = pos;
+            while (pos < length && Character.isWhitespace(html.charAt(pos))) {
+                pos++;
+            }
+
+            String value = "";
+            if (pos < length && html.charAt(pos) == '=') {
+                pos++;
+                while (pos < length && Character.isWhitespace(html.charAt(pos))) {
+                    pos++;
+                }
+                value = readAttributeValue(collect);
+            }
+
+            if (collect) {
+                String attr = html.subSequence(attrStart, attrEnd).toString().toLowerCase(Locale.ROOT);
+                attributes.putIfAbsent(attr, decodeEntities(value, true));
+            }
+        }
+        return attributes;
+    }
+
+    private String readAttributeValue(boolean collect) {
+        if (pos >= length) {
+            return "";
+        }
+        int start;
+        int end;
+        char quote = html.charAt(pos);
+        if (quote == '"' || quote == '\'') {
+            start = pos + 1;
+            end = indexOf(quote, start);
+            if (end < 0) {
+                end = length;
+            }
+            pos = Math.min(length, end + 1);
+        } else {
+            start = pos;
+            while (pos < length && !Character.isWhitespace(html.charAt(pos)) && html.charAt(pos) != '>') {
+                pos++;
+            }
+            end = pos;
+        }
+        return collect ? html.subSequence(start, end).toString() : "";
+    }
+
+    /**
+     * Пропускает содержимое элемента до его закрывающего тега.
+     *
+     * @return конец содержимого элемента
+     */
+    private int skipRawText(String name) {
+        int from = pos;
+        while (true) {
+            int lt = indexOf("</", from);
+            if (lt < 0) {
+                pos = length;
+                return length;
+            }
+            if (regionMatchesIgnoreCase(lt + 2, name)) {
+                pos = lt;
+                skipPast('>');
+                return lt;
+            }
+            from = lt + 2;
+        }
+    }
+
+    /**
+     * Раскодирует сущность, начинающуюся с {@code &} в позиции {@code pos}.
+     * Нераспознанный {@code &} добавляется как есть.
+     *
+     * @return позиция за сущностью
+     */
+    private static int decodeEntity(CharSequence s, int pos, boolean inAttribute, StringBuilder out) {
+        int length = s.length();
+        int i = pos + 1;
+
+        if (i < length && s.charAt(i) == '#') {
+            i++;
+            boolean hex = i < length && (s.charAt(i) == 'x' || s.charAt(i) == 'X');
+            if (hex) {
+                i++;
+            }
+            int digitsStart = i;
+            int codePoint = 0;
+            while (i < length && i - digitsStart < 8 && Character.digit(s.charAt(i), hex ? 16 : 10) >= 0) {
+                codePoint = codePoint * (hex ? 16 : 10) + Character.digit(s.charAt(i), hex ? 16 : 10);
+                i++;
+            }
+            if (i == digitsStart) {
+                out.append('&');
+                return pos + 1;
+            }
+            if (i < length && s.charAt(i) == ';') {
+                i++;
+            }
+            if (codePoint <= 0 || codePoint > Character.MAX_CODE_POINT
+                    || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+                codePoint = 0xFFFD;
+            }
+            out.appendCodePoint(codePoint);
+            return i;
+        }
+
+        for (int e = 0; e < COMMON_ENTITIES.length; e++) {
+            if (regionMatches(s, i, COMMON_ENTITIES[e])) {
+                out.append(COMMON_ENTITY_CHARS[e]);
+                return i + COMMON_ENTITIES[e].length();
+            }
+        }
+
+        while (i < length && i - pos <= MAX_ENTITY_LENGTH && Character.isLetterOrDigit(s.charAt(i))) {
+            i++;
+        }
+        if (i == pos + 1) {
+            out.append('&');
+            return pos + 1;
+        }
+
+        String name = s.subSequence(pos + 1, i).toString();
+        boolean terminated = i < length && s.charAt(i) == ';';
+        if (terminated && Entities.isNamedEntity(name)) {
+            out.append(Entities.getByName(name));
+            return i + 1;
+        }
+        // Без «;» браузеры понимают только базовые сущности, а в атрибутах — если за ними не идёт «=».
+        if (!terminated && Entities.isBaseNamedEntity(name)
+                && !(inAttribute && i < length && s.charAt(i) == '=')) {
+            out.append(Entities.getByName(name));
+            return i;
+        }
+        out.append('&');
+        return pos + 1;
+    }
+
+    private void appendCollapsed(char c) {
+        if (isSpace(c)) {
+            if (!text.isEmpty() && text.charAt(text.length() - 1) != ' ') {
+                text.append(' ');
+            }
+        } else {
+            text.append(c);
+        }
+    }
+
+    /**
+     * Добавляет строку, заменяя последовательности пробельных символов одним пробелом.
+     */
+    private static void collapseInto(StringBuilder result, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isSpace(c)) {
+                if (!result.isEmpty() && result.charAt(result.length() - 1) != ' ') {
+                    result.append(' ');
+                }
+            } else {
+                result.append(c);
+            }
+        }
+    }
+
+    private void separate(String name) {
+        if (BLOCK_ELEMENTS.contains(name) && !text.isEmpty() && text.charAt(text.length() - 1) != ' ') {
+            text.append(' ');
+        }
+    }
+
+    private void skipPast(char c) {
+        int end = indexOf(c, pos);
+        pos = end < 0 ? length : end + 1;
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < length; i++) {
+            if (html.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String s, int from) {
+        char first = s.charAt(0);
+        for (int i = from; i <= length - s.length(); i++) {
+            if (html.charAt(i) == first && startsWith(s, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(String s, int at) {
+        if (at + s.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (html.charAt(at + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionMatchesIgnoreCase(int at, String lowerCase) {
+        if (at + lowerCase.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase(html.charAt(at + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || c == '\u00A0';
+    }
+
+    private static boolean regionMatches(CharSequence s, int at, String expected) {
+        if (at + expected.length() > s.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (s.charAt(at + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == ':' || c == '_';
+    }
+
+    /**
+     * Заголовок и видимый текст страницы.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class ExtractedText {
+        private final String title;
+        private final String text;
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.services;
+
+/**
+ * Итог переиндексации отдельной страницы.
+ */
+public enum IndexPageResult {
+    /** Страница загружена и переиндексирована. */
+    INDEXED,
+    /** Адрес не относится ни к одному сайту из конфигурации. */
+    OUTSIDE_SITES,
+    /** По адресу находится не HTML-документ, индексировать нечего. */
+    NOT_HTML
+}
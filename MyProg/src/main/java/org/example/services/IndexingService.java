@@ -3,5 +3,5 @@ package org.example.services;
 public interface IndexingService {
     boolean startIndexing();
     boolean stopIndexing();
-    boolean indexPage(String url);
+    IndexPageResult indexPage(String url);
 }
\ No newline at end of file
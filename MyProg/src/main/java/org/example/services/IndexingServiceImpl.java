@@ -2,26 +2,27 @@ package org.example.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.config.CrawlExecutionMode;
+import org.example.config.SeenFilterMode;
 import org.example.config.Site;
 import org.example.config.SitesList;
-import org.example.model.Page;
 import org.example.model.SiteStatus;
 import org.example.repositories.PageRepository;
 import org.example.repositories.SiteRepository;
-import org.jsoup.Connection;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 
 import java.io.IOException;
-import java.net.URI;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -31,11 +32,31 @@ public class IndexingServiceImpl implements IndexingService {
     private final SitesList sitesList;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-
-    private ForkJoinPool pool;
-    private Map<String, SiteIndexer> siteIndexers = new ConcurrentHashMap<>();
+    private final PageCrawler pageCrawler;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final PageWriter pageWriter;
+    private final LemmaIndexer lemmaIndexer;
+    private final PageReindexer pageReindexer;
+    private final CrawlCheckpointStore checkpointStore;
+    private final SiteSeeder siteSeeder;
+    private final LemmaService lemmaService;
+
+    private ExecutorService executor;
+    private PolitenessScheduler scheduler;
+    private ScheduledExecutorService checkpointer;
     private volatile boolean isIndexing = false;
 
+    /**
+     * Защищает переход между запущенным и остановленным состоянием.
+     * Завершение сайта синхронизируется на нём, а не на сервисе, так как
+     * {@link #stopIndexing()} ждёт окончания задач обхода, удерживая сервис.
+     */
+    private final Object stateLock = new Object();
+
+    /** Запас сверх таймаута загрузки на запись страницы при остановке обхода, мс. */
+    private static final long CRAWL_STOP_MARGIN = 10_000;
+    private static final long CHECKPOINTER_STOP_TIMEOUT = 10_000;
+
     @Override
     public synchronized boolean startIndexing() {
         if (isIndexing) {
@@ -43,32 +64,83 @@ public class IndexingServiceImpl implements IndexingService {
             return false;
         }
 
-        isIndexing = true;
-        pool = new ForkJoinPool();
+        synchronized (stateLock) {
+            isIndexing = true;
+            scheduler = new PolitenessScheduler(this::onSiteFinished);
 
-        for (Site siteConfig : sitesList.getSites()) {
-            SiteIndexer indexer = new SiteIndexer(siteConfig);
-            siteIndexers.put(siteConfig.getUrl(), indexer);
-            pool.execute(() -> {
+            for (Site siteConfig : sitesList.getSites()) {
                 try {
-                    indexSite(siteConfig);
+                    CrawlCheckpoint checkpoint = loadCheckpoint(siteConfig);
+                    CrawlFrontier frontier = createFrontier(siteConfig, checkpoint);
+                    frontier.hold();
+                    scheduler.register(frontier, sitesList.getCrawlDelay(siteConfig), sitesList.getCrawlBurst(),
+                            createLimiter(siteConfig), sitesList.getWeight(siteConfig));
+                    Thread.ofVirtual().name("seeder-" + siteConfig.getName())
+                            .start(() -> seed(frontier, siteConfig, checkpoint));
                 } catch (Exception e) {
                     log.error("Ошибка индексации сайта: {}", siteConfig.getUrl(), e);
                 }
-            });
-        }
+            }
 
-        return true;
+            if (scheduler.isIdle()) {
+                isIndexing = false;
+                return true;
+            }
+
+            if (sitesList.getExecutionMode() == CrawlExecutionMode.VIRTUAL_THREADS) {
+                executor = Executors.newVirtualThreadPerTaskExecutor();
+                executor.execute(new VirtualThreadDispatcher(scheduler, executor,
+                        new Semaphore(sitesList.getMaxConcurrentFetches())));
+            } else {
+                ForkJoinPool pool = new ForkJoinPool();
+                executor = pool;
+                for (int i = 0; i < pool.getParallelism(); i++) {
+                    pool.execute(new WebCrawler(scheduler));
+                }
+            }
+
+            if (sitesList.getCheckpointInterval() > 0) {
+                checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "crawl-checkpoint");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                checkpointer.scheduleWithFixedDelay(this::saveCheckpoints, sitesList.getCheckpointInterval(),
+                        sitesList.getCheckpointInterval(), TimeUnit.MILLISECONDS);
+            }
+
+            return true;
+        }
     }
 
     @Override
     public synchronized boolean stopIndexing() {
-        if (!isIndexing) {
-            return false;
+        synchronized (stateLock) {
+            if (!isIndexing) {
+                return false;
+            }
+            isIndexing = false;
         }
 
-        isIndexing = false;
-        pool.shutdownNow();
+        // Новые адреса больше не выдаются, а начатые страницы дозагружаются
+        // и записываются, чтобы контрольная точка не потеряла их.
+        scheduler.stop();
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+            awaitTermination(checkpointer, CHECKPOINTER_STOP_TIMEOUT);
+        }
+        if (!awaitTermination(executor, sitesList.getFetchTimeout() + CRAWL_STOP_MARGIN)) {
+            log.warn("Задачи обхода не завершились вовремя и будут прерваны");
+            executor.shutdownNow();
+            awaitTermination(executor, CRAWL_STOP_MARGIN);
+        }
+        try {
+            pageWriter.flush();
+            lemmaIndexer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveCheckpoints();
 
         siteRepository.findAll().forEach(site -> {
             if (site.getStatus() == SiteStatus.INDEXING) {
@@ -83,244 +155,329 @@ public class IndexingServiceImpl implements IndexingService {
     }
 
     @Override
-    public boolean indexPage(String url) {
-        return false;
-    }
-
-    private void indexSite(Site siteConfig) {
-        org.example.model.Site siteEntity = new org.example.model.Site();
-        siteEntity.setUrl(siteConfig.getUrl());
-        siteEntity.setName(siteConfig.getName());
-        siteEntity.setStatus(SiteStatus.INDEXING);
-        siteEntity.setStatusTime(LocalDateTime.now());
-        siteEntity = siteRepository.save(siteEntity);
-
-        try {
-            WebCrawler crawler = new WebCrawler(siteConfig.getUrl(), siteEntity);
-            Set<String> pages = crawler.compute();
-
-            siteEntity.setStatus(SiteStatus.INDEXED);
-            siteEntity.setStatusTime(LocalDateTime.now());
-            siteRepository.save(siteEntity);
-
-            log.info("Сайт {} проиндексирован. Найдено страниц: {}", siteConfig.getUrl(), pages.size());
-
-        } catch (Exception e) {
-            log.error("Ошибка при индексации сайта: {}", siteConfig.getUrl(), e);
-            siteEntity.setStatus(SiteStatus.FAILED);
-            siteEntity.setLastError(e.getMessage());
-            siteEntity.setStatusTime(LocalDateTime.now());
-            siteRepository.save(siteEntity);
+    public IndexPageResult indexPage(String url) {
+        Site siteConfig = sitesList.getSites().stream()
+                .filter(site -> urlCanonicalizer.belongsToSite(url, site.getUrl()))
+                .findFirst()
+                .orElse(null);
+        if (siteConfig == null) {
+            return IndexPageResult.OUTSIDE_SITES;
         }
-    }
 
-    private class WebCrawler extends RecursiveTask<Set<String>> {
-        private final String url;
-        private final org.example.model.Site site;
-        private final Set<String> visitedUrls;
-
-        private static final List<String> EXCLUDED_EXTENSIONS = Arrays.asList(
-                ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".webp", ".svg",
-                ".ico", ".pdf", ".doc", ".docx", ".xls", ".xlsx", ".ppt", ".pptx",
-                ".zip", ".rar", ".7z", ".tar", ".gz",
-                ".mp3", ".mp4", ".avi", ".mov", ".wmv",
-                ".css", ".js", ".json", ".xml"
-        );
-
-        public WebCrawler(String url, org.example.model.Site site) {
-            this.url = url;
-            this.site = site;
-            this.visitedUrls = Collections.synchronizedSet(new HashSet<>());
+        String path = urlCanonicalizer.canonicalize(url, siteConfig.getUrl());
+        if (path == null) {
+            return IndexPageResult.OUTSIDE_SITES;
         }
 
-        @Override
-        protected Set<String> compute() {
-            Set<String> result = new HashSet<>();
-
-            if (shouldExcludeUrl(url)) {
-                return result;
+        org.example.model.Site siteEntity = siteRepository.findFirstByUrlOrderByIdDesc(siteConfig.getUrl())
+                .orElseGet(() -> {
+                    org.example.model.Site site = new org.example.model.Site();
+                    site.setUrl(siteConfig.getUrl());
+                    site.setName(siteConfig.getName());
+                    site.setStatus(SiteStatus.INDEXED);
+                    site.setStatusTime(LocalDateTime.now());
+                    return siteRepository.save(site);
+                });
+
+        int code;
+        String html;
+        PageText text;
+        PageValidators validators;
+        try {
+            PageCrawler.FetchedPage page = pageCrawler.fetch(path);
+            if (page == null) {
+                return IndexPageResult.NOT_HTML;
             }
+            code = page.getCode();
+            html = pageCrawler.contentToStore(page);
+            text = pageCrawler.textOf(page);
+            validators = page.getValidators();
+        } catch (IOException e) {
+            log.warn("Не удалось загрузить страницу {}: {}", path, e.getMessage());
+            code = 404;
+            html = "";
+            text = PageText.EMPTY;
+            validators = PageValidators.NONE;
+        }
 
-            result.add(url);
-            visitedUrls.add(url);
-
-            try {
-                Thread.sleep(1500);
-
-                Document doc = Jsoup.connect(url)
-                        .userAgent("HeliontSearchBot")
-                        .referrer("http://www.google.com")
-                        .timeout(10000)
-                        .followRedirects(true)
-                        .ignoreContentType(false)
-                        .get();
+        pageReindexer.reindexPage(siteEntity, path, code, html, text, validators);
+        return IndexPageResult.INDEXED;
+    }
 
-                savePage(url, doc.html(), 200);
+    /**
+     * @return контрольная точка, с которой можно продолжить обход сайта,
+     * или {@code null}; непригодная контрольная точка удаляется
+     */
+    private CrawlCheckpoint loadCheckpoint(Site siteConfig) {
+        CrawlCheckpoint checkpoint = sitesList.isResume() ? checkpointStore.load(siteConfig.getUrl()) : null;
+        if (checkpoint != null && !checkpoint.getPendingUrls().isEmpty()
+                && checkpointSite(checkpoint, siteConfig) != null) {
+            return checkpoint;
+        }
+        checkpointStore.delete(siteConfig.getUrl());
+        return null;
+    }
 
-                Elements links = doc.select("a[href]");
-                List<WebCrawler> tasks = new ArrayList<>();
+    private org.example.model.Site checkpointSite(CrawlCheckpoint checkpoint, Site siteConfig) {
+        return siteRepository.findById(checkpoint.getSiteId())
+                .filter(site -> site.getUrl().equals(siteConfig.getUrl()))
+                .filter(site -> site.getStatus() != SiteStatus.INDEXED)
+                .orElse(null);
+    }
 
-                for (var link : links) {
-                    String absUrl = link.attr("abs:href");
+    /**
+     * Создаёт границу обхода сайта. Очередь остаётся пустой: её заполняет
+     * {@link #seed}, когда прочитан robots.txt.
+     */
+    private CrawlFrontier createFrontier(Site siteConfig, CrawlCheckpoint checkpoint) {
+        org.example.model.Site siteEntity = checkpoint != null ? checkpointSite(checkpoint, siteConfig) : null;
 
-                    absUrl = normalizeUrl(absUrl);
+        if (siteEntity == null && sitesList.isIncremental()) {
+            siteEntity = siteRepository.findFirstByUrlOrderByIdDesc(siteConfig.getUrl()).orElse(null);
+        }
 
-                    if (isValidUrlForCrawling(absUrl, site.getUrl()) &&
-                            !visitedUrls.contains(absUrl) &&
-                            !pageRepository.existsByPathAndSite(absUrl, site) &&
-                            !shouldExcludeUrl(absUrl)) {
+        boolean reused = siteEntity != null;
+        Instant previousCrawlTime = reused && siteEntity.getStatus() == SiteStatus.INDEXED
+                ? siteEntity.getStatusTime().atZone(ZoneId.systemDefault()).toInstant()
+                : null;
+        if (!reused) {
+            siteEntity = new org.example.model.Site();
+            siteEntity.setUrl(siteConfig.getUrl());
+        }
+        siteEntity.setName(siteConfig.getName());
+        siteEntity.setStatus(SiteStatus.INDEXING);
+        siteEntity.setStatusTime(LocalDateTime.now());
+        siteEntity.setLastError(null);
+        siteEntity = siteRepository.save(siteEntity);
 
-                        WebCrawler task = new WebCrawler(absUrl, site);
-                        task.fork();
-                        tasks.add(task);
-                    }
-                }
+        CrawlFrontier frontier = new CrawlFrontier(siteEntity, sitesList.getMaxConcurrency(siteConfig),
+                createSeenFilter());
+        frontier.setPreviousCrawlTime(previousCrawlTime);
 
-                for (WebCrawler task : tasks) {
-                    result.addAll(task.join());
-                }
+        if (sitesList.isDetectNearDuplicates()) {
+            frontier.setDuplicateIndex(new NearDuplicateIndex(sitesList.getNearDuplicateDistance()));
+        }
 
-            } catch (IOException e) {
-                log.warn("Не удалось загрузить страницу {}: {}", url, e.getMessage());
-                if (!shouldExcludeUrl(url)) {
-                    savePage(url, "", 404);
+        if (reused) {
+            for (Object[] row : pageRepository.findValidatorsBySite(siteEntity)) {
+                PageValidators validators = new PageValidators(
+                        (String) row[1], (String) row[2], (String) row[3], (Long) row[4]);
+                frontier.addKnownPage((String) row[0], validators);
+                if (frontier.getDuplicateIndex() != null && validators.getSimhash() != null) {
+                    frontier.getDuplicateIndex().add((String) row[0], validators.getSimhash());
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
             }
-
-            return result;
         }
 
+        return frontier;
+    }
 
-        private boolean shouldExcludeUrl(String url) {
-            if (url == null || url.isEmpty()) {
-                return true;
-            }
-
-            String lowerUrl = url.toLowerCase();
-            for (String ext : EXCLUDED_EXTENSIONS) {
-                if (lowerUrl.endsWith(ext)) {
-                    return true;
-                }
-            }
+    private AdaptiveHostLimiter createLimiter(Site siteConfig) {
+        if (!sitesList.isAdaptiveCrawlRate()) {
+            return null;
+        }
+        long minDelay = siteConfig.getCrawlDelay() != null ? siteConfig.getCrawlDelay() : sitesList.getMinCrawlDelay();
+        return new AdaptiveHostLimiter(sitesList.getMaxHostConcurrency(), sitesList.getTargetFetchLatency(),
+                sitesList.getMaxFetchErrorRate(), sitesList.getAdaptiveWindow(), minDelay, sitesList.getMaxCrawlDelay());
+    }
 
-            if (lowerUrl.startsWith("mailto:")) {
-                return true;
-            }
+    private SeenUrlFilter createSeenFilter() {
+        if (sitesList.getSeenFilter() == SeenFilterMode.BLOOM) {
+            return new BloomSeenUrlFilter(sitesList.getSeenFilterExpectedUrls(),
+                    sitesList.getSeenFilterFalsePositiveRate());
+        }
+        return new ExactSeenUrlFilter();
+    }
 
-            if (lowerUrl.startsWith("tel:")) {
-                return true;
+    /**
+     * Заполняет очередь сайта. Сначала читается robots.txt, и только после
+     * применения его правил и Crawl-delay в очередь попадают главная страница
+     * или адреса из контрольной точки. Sitemap читается уже параллельно
+     * с обходом; пока чтение не закончено, сайт удерживается от завершения.
+     */
+    private void seed(CrawlFrontier frontier, Site siteConfig, CrawlCheckpoint checkpoint) {
+        PolitenessScheduler activeScheduler = scheduler;
+        RobotsTxt robots = RobotsTxt.ALLOW_ALL;
+        try {
+            robots = siteSeeder.loadRobots(frontier, activeScheduler);
+            if (robots.getCrawlDelaySeconds() != null) {
+                activeScheduler.raiseCrawlDelay(frontier, (long) (robots.getCrawlDelaySeconds() * 1000));
             }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось прочитать robots.txt сайта {}: {}", siteConfig.getUrl(), e.getMessage());
+        }
 
-            if (lowerUrl.contains("#")) {
-                return true;
+        try {
+            if (checkpoint != null) {
+                frontier.restore(checkpoint);
+                log.info("Обход сайта {} продолжен с контрольной точки: в очереди {}, обработано {}",
+                        siteConfig.getUrl(), checkpoint.getPendingUrls().size(), checkpoint.getProcessed());
+            } else {
+                frontier.offer(urlCanonicalizer.canonicalize(siteConfig.getUrl(), siteConfig.getUrl()));
             }
+            siteSeeder.seedFromSitemaps(frontier, robots, activeScheduler, () -> isIndexing);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось заполнить очередь сайта {} из sitemap: {}",
+                    frontier.getSite().getUrl(), e.getMessage());
+        } finally {
+            activeScheduler.release(frontier);
+        }
+    }
 
+    /**
+     * Сохраняет состояние обхода всех ещё не завершённых сайтов. Страницы,
+     * загруженные после сохранения, при продолжении обхода будут сверены
+     * по хэшу содержимого, поэтому повторно в индекс не попадут.
+     */
+    private void saveCheckpoints() {
+        for (CrawlFrontier frontier : scheduler.getFrontiers()) {
             try {
-                Connection.Response response = Jsoup.connect(url)
-                        .userAgent("HeliontSearchBot")
-                        .timeout(3000)
-                        .ignoreContentType(true)
-                        .execute();
-
-                String contentType = response.contentType();
-                if (contentType != null && !contentType.startsWith("text/html")) {
-                    return true;
-                }
-            } catch (Exception e) {
+                checkpointStore.save(frontier);
+            } catch (IOException e) {
+                log.warn("Не удалось сохранить контрольную точку сайта {}: {}",
+                        frontier.getSite().getUrl(), e.getMessage());
             }
+        }
+    }
 
+    /**
+     * Останавливает приём задач и ждёт завершения уже начатых.
+     *
+     * @return {@code false}, если задачи не завершились за отведённое время
+     */
+    private boolean awaitTermination(ExecutorService service, long timeoutMillis) {
+        service.shutdown();
+        try {
+            return service.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
         }
+    }
 
-
-        private boolean isValidUrlForCrawling(String url, String baseUrl) {
-            if (url == null || url.isEmpty()) {
-                return false;
+    private void onSiteFinished(CrawlFrontier frontier) {
+        synchronized (stateLock) {
+            if (!isIndexing) {
+                return;
             }
-
-            try {
-                URI uri = new URI(url);
-                URI baseUri = new URI(baseUrl);
-
-                String host = uri.getHost();
-                String baseHost = baseUri.getHost();
-
-                if (host == null || baseHost == null) {
-                    return false;
+            if (scheduler.isIdle()) {
+                isIndexing = false;
+                if (checkpointer != null) {
+                    checkpointer.shutdownNow();
                 }
-
-                host = host.replace("www.", "");
-                baseHost = baseHost.replace("www.", "");
-
-                return host.equals(baseHost);
-
-            } catch (Exception e) {
-                return false;
+                // Рабочие уже выходят: планировщик без сайтов больше не выдаёт адресов.
+                executor.shutdown();
             }
         }
 
+        org.example.model.Site siteEntity = frontier.getSite();
+        try {
+            pageWriter.flush();
+            lemmaIndexer.flush();
+            lemmaIndexer.forgetSite(siteEntity.getId());
+            checkpointStore.delete(siteEntity.getUrl());
 
-        private String normalizeUrl(String url) {
-            if (url == null) return "";
+            siteEntity.setStatus(SiteStatus.INDEXED);
+            siteEntity.setStatusTime(LocalDateTime.now());
+            siteRepository.save(siteEntity);
 
-            int fragmentIndex = url.indexOf('#');
-            if (fragmentIndex != -1) {
-                url = url.substring(0, fragmentIndex);
-            }
+            log.info("Сайт {} проиндексирован. Найдено страниц: {}",
+                    siteEntity.getUrl(), frontier.getProcessedCount());
+            WordFormCache cache = lemmaService.getWordFormCache();
+            log.info("Кэш словоформ: {} форм, попаданий {} ({}%), промахов {}, вытеснено {}",
+                    cache.size(), cache.getHits(), Math.round(cache.getHitRate() * 100),
+                    cache.getMisses(), cache.getEvictions());
 
-            int queryIndex = url.indexOf('?');
-            if (queryIndex != -1) {
-                url = url.substring(0, queryIndex);
-            }
+        } catch (Exception e) {
+            log.error("Ошибка при индексации сайта: {}", siteEntity.getUrl(), e);
+            siteEntity.setStatus(SiteStatus.FAILED);
+            siteEntity.setLastError(e.getMessage());
+            siteEntity.setStatusTime(LocalDateTime.now());
+            siteRepository.save(siteEntity);
+        }
+    }
 
-            return url.trim();
+    private void process(PolitenessScheduler.CrawlLease lease) {
+        FetchOutcome outcome = FetchOutcome.SKIPPED;
+        try {
+            outcome = pageCrawler.crawl(lease.getFrontier(), lease.getUrl());
+        } catch (RuntimeException e) {
+            log.error("Ошибка при обходе страницы {}", lease.getUrl(), e);
+        } finally {
+            scheduler.complete(lease, outcome);
         }
+    }
 
-        private void savePage(String urlPath, String content, int code) {
-            try {
-                String normalizedPath = normalizeUrl(urlPath);
+    /**
+     * Рабочий обхода в режиме {@link CrawlExecutionMode#FORK_JOIN}: берёт у
+     * планировщика адреса тех сайтов, к которым уже можно обращаться,
+     * пока обход не будет завершён или остановлен.
+     */
+    private class WebCrawler extends RecursiveAction {
+        private final PolitenessScheduler scheduler;
 
-                if (shouldExcludeUrl(normalizedPath)) {
-                    return;
-                }
+        public WebCrawler(PolitenessScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
 
-                Page page;
-                Optional<Page> existingPage = pageRepository.findByPathAndSite(normalizedPath, site);
-
-                if (existingPage.isPresent()) {
-                    page = existingPage.get();
-                    page.setCode(code);
-                    page.setContent(content);
-                    log.debug("Обновлена существующая страница: {}", normalizedPath);
-                } else {
-                    page = new Page();
-                    page.setSite(site);
-                    page.setPath(normalizedPath);
-                    page.setCode(code);
-                    page.setContent(content);
-                    log.debug("Создана новая страница: {}", normalizedPath);
+        @Override
+        protected void compute() {
+            try {
+                PolitenessScheduler.CrawlLease lease;
+                while ((lease = scheduler.next()) != null) {
+                    process(lease);
                 }
-
-                pageRepository.save(page);
-
-                site.setStatusTime(LocalDateTime.now());
-                siteRepository.save(site);
-
-            } catch (DataIntegrityViolationException e) {
-                log.warn("Нарушение уникальности для пути: {}. Пропускаем.", urlPath);
-            } catch (Exception e) {
-                log.error("Ошибка при сохранении страницы {}: {}", urlPath, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
 
-    private static class SiteIndexer {
-        private final Site site;
+    /**
+     * Диспетчер режима {@link CrawlExecutionMode#VIRTUAL_THREADS}: запускает
+     * обработку каждого выданного планировщиком адреса в отдельном виртуальном
+     * потоке. Общее число одновременных загрузок ограничено семафором,
+     * число загрузок одного сайта — слотами его границы обхода.
+     */
+    private class VirtualThreadDispatcher implements Runnable {
+        private final PolitenessScheduler scheduler;
+        private final ExecutorService executor;
+        private final Semaphore fetchPermits;
+
+        public VirtualThreadDispatcher(PolitenessScheduler scheduler, ExecutorService executor,
+                                       Semaphore fetchPermits) {
+            this.scheduler = scheduler;
+            this.executor = executor;
+            this.fetchPermits = fetchPermits;
+        }
 
-        public SiteIndexer(Site site) {
-            this.site = site;
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    fetchPermits.acquire();
+                    PolitenessScheduler.CrawlLease lease = scheduler.next();
+                    if (lease == null) {
+                        fetchPermits.release();
+                        return;
+                    }
+
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                process(lease);
+                            } finally {
+                                fetchPermits.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        scheduler.complete(lease);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,264 @@
+package org.example.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.SitesList;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Стадия построения индекса для сохранённых страниц. Лемматизация идёт
+ * параллельно на всех ядрах, а запись выполняет один поток: частоты лемм
+ * сайта увеличиваются одним пакетным upsert, строки индекса вставляются
+ * JDBC-батчами в одной транзакции на пачку. Идентификаторы лемм кэшируются
+ * по сайту, поэтому для каждой леммы не нужен отдельный SELECT перед UPDATE.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LemmaIndexer {
+
+    private static final String UPSERT_LEMMA_SQL =
+            "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+
+    private static final String INSERT_INDEX_SQL =
+            "INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES (?, ?, ?, ?)";
+
+    private static final int MAX_LEMMA_LENGTH = 255;
+    private static final int SELECT_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LemmaService lemmaService;
+    private final SitesList sitesList;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Integer, Map<String, Integer>> lemmaIds = new ConcurrentHashMap<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private long processed;
+
+    private ThreadPoolExecutor lemmatizers;
+    private BlockingQueue<PageLemmas> results;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        int threads = sitesList.getIndexerThreads() > 0
+                ? sitesList.getIndexerThreads()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+
+        lemmatizers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "lemmatizer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        results = new ArrayBlockingQueue<>(Math.max(1, sitesList.getIndexerBatchSize() * 4));
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "index-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lemmatizers.shutdown();
+        lemmatizers.awaitTermination(30, TimeUnit.SECONDS);
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Ставит сохранённую страницу в очередь на лемматизацию. Если все
+     * лемматизаторы заняты, страница обрабатывается в вызывающем потоке.
+     */
+    public void submit(int siteId, int pageId, String text) {
+        submitAll(siteId, Map.of(pageId, text));
+    }
+
+    /**
+     * Ставит страницы сайта на параллельную лемматизацию.
+     *
+     * @param pages текст страницы по её идентификатору
+     */
+    public void submitAll(int siteId, Map<Integer, String> pages) {
+        submitted.addAndGet(pages.size());
+        lemmaService.lemmatizeAll(pages.entrySet(), Map.Entry::getValue, sitesList.isStoreLemmaPositions(),
+                lemmatizers, (page, lemmas) -> {
+                    try {
+                        results.put(new PageLemmas(siteId, page.getKey(), lemmas));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        markProcessed(1);
+                    }
+                });
+    }
+
+    /**
+     * Ждёт, пока будут записаны леммы всех страниц, поставленных в очередь до вызова.
+     */
+    public void flush() throws InterruptedException {
+        long target = submitted.get();
+        synchronized (this) {
+            while (processed < target && writerThread.isAlive()) {
+                wait(100);
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает кэш идентификаторов лемм сайта после окончания его обхода.
+     */
+    public void forgetSite(int siteId) {
+        lemmaIds.remove(siteId);
+    }
+
+    private void writeLoop() {
+        List<PageLemmas> batch = new ArrayList<>();
+        int batchSize = Math.max(1, sitesList.getIndexerBatchSize());
+
+        while (running || !results.isEmpty()) {
+            try {
+                PageLemmas first = results.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                results.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать индекс для {} страниц: {}", batch.size(), e.getMessage());
+            } finally {
+                markProcessed(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PageLemmas> batch) {
+        Map<Integer, TermCounter> pagesPerLemma = new HashMap<>();
+        for (PageLemmas page : batch) {
+            TermCounter siteLemmas = pagesPerLemma.computeIfAbsent(page.getSiteId(), id -> new TermCounter());
+            page.getLemmas().forEach((lemma, count) -> {
+                if (lemma.length() <= MAX_LEMMA_LENGTH) {
+                    siteLemmas.add(lemma);
+                }
+            });
+        }
+
+        List<Object[]> lemmaRows = new ArrayList<>();
+        pagesPerLemma.forEach((siteId, lemmas) ->
+                lemmas.forEach((lemma, pages) -> lemmaRows.add(new Object[]{siteId, lemma, pages})));
+
+        // Частоты лемм и строки индекса записываются одной транзакцией: иначе
+        // при ошибке вставки индекса частоты остались бы увеличенными.
+        Map<Integer, Map<String, Integer>> resolved = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!lemmaRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_LEMMA_SQL, lemmaRows);
+            }
+
+            pagesPerLemma.forEach((siteId, lemmas) -> {
+                List<String> siteLemmas = new ArrayList<>(lemmas.size());
+                lemmas.forEach((lemma, pages) -> siteLemmas.add(lemma));
+                resolved.put(siteId, resolveLemmaIds(siteId, siteLemmas));
+            });
+
+            List<Object[]> indexRows = new ArrayList<>();
+            for (PageLemmas page : batch) {
+                Map<String, Integer> cached = lemmaIds.get(page.getSiteId());
+                Map<String, Integer> found = resolved.get(page.getSiteId());
+                page.getLemmas().forEach((lemma, count) -> {
+                    Integer lemmaId = cached != null ? cached.get(lemma) : null;
+                    if (lemmaId == null && found != null) {
+                        lemmaId = found.get(lemma);
+                    }
+                    if (lemmaId != null) {
+                        PositionList positions = page.getLemmas().getPositions(lemma);
+                        indexRows.add(new Object[]{page.getPageId(), lemmaId, (float) count,
+                                positions != null ? positions.encode() : null});
+                    }
+                });
+            }
+            if (!indexRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_INDEX_SQL, indexRows);
+            }
+        });
+
+        // Идентификаторы кэшируются только после фиксации: при откате новых лемм в базе нет.
+        resolved.forEach((siteId, ids) ->
+                lemmaIds.computeIfAbsent(siteId, id -> new ConcurrentHashMap<>()).putAll(ids));
+    }
+
+    /**
+     * Находит идентификаторы лемм сайта, которых ещё нет в кэше.
+     */
+    private Map<String, Integer> resolveLemmaIds(int siteId, Iterable<String> lemmas) {
+        Map<String, Integer> cached = lemmaIds.getOrDefault(siteId, Map.of());
+
+        List<String> missing = new ArrayList<>();
+        for (String lemma : lemmas) {
+            if (!cached.containsKey(lemma)) {
+                missing.add(lemma);
+            }
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        for (int from = 0; from < missing.size(); from += SELECT_CHUNK_SIZE) {
+            List<String> chunk = missing.subList(from, Math.min(missing.size(), from + SELECT_CHUNK_SIZE));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(siteId);
+            args.addAll(chunk);
+
+            jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (" + placeholders + ")",
+                    rs -> {
+                        ids.put(rs.getString(2), rs.getInt(1));
+                    },
+                    args.toArray());
+        }
+        return ids;
+    }
+
+    private void markProcessed(int count) {
+        synchronized (this) {
+            processed += count;
+            notifyAll();
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class PageLemmas {
+        private final int siteId;
+        private final int pageId;
+        /** Вхождения лемм есть в счётчике, только если они хранятся. */
+        private final TermCounter lemmas;
+    }
+}
@@ -3,24 +3,53 @@ package org.example.services;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
-import org.jsoup.Jsoup;
+import org.example.config.SitesList;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Лемматизация текстов. Сервис потокобезопасен: словари
+ * {@link LuceneMorphology} заполняются только при загрузке, а поиск
+ * форм лишь читает их массивы, поэтому один экземпляр морфологии
+ * используется всеми потоками без блокировок. Кэш словоформ
+ * потокобезопасен, счётчики лемм у каждого потока свои.
+ */
 @Service
+@Slf4j
 public class LemmaService {
 
+    /**
+     * Получает результат лемматизации документа.
+     */
+    @FunctionalInterface
+    public interface LemmaConsumer<T> {
+        /**
+         * @param lemmas счётчик лемм; если запрашивались вхождения, они
+         *               доступны через {@link TermCounter#getPositions}
+         */
+        void accept(T document, TermCounter lemmas);
+    }
+
+    @FunctionalInterface
+    private interface LemmaSink {
+        void accept(String lemma, int position, int start, int end);
+    }
+
+    private static final int MIN_WORD_LENGTH = 2;
+
     private LuceneMorphology russianMorphology;
     private LuceneMorphology englishMorphology;
 
+    /** Найденные леммы словоформ: частые формы не разбираются морфологией повторно. */
+    private final WordFormCache wordFormCache;
 
-    private final Pattern wordPattern = Pattern.compile("[а-яёА-ЯЁa-zA-Z]+");
-    private final Pattern cyrillicPattern = Pattern.compile("[а-яёА-ЯЁ]+");
-    private final Pattern latinPattern = Pattern.compile("[a-zA-Z]+");
+    private final ThreadLocal<TermCounter> threadCounter = ThreadLocal.withInitial(TermCounter::new);
 
 
     private final Set<String> servicePOS = new HashSet<>(Arrays.asList(
@@ -58,7 +87,9 @@ public class LemmaService {
             "who", "whom", "whose", "where", "when", "why", "how"
     ));
 
-    public LemmaService() {
+    public LemmaService(SitesList sitesList) {
+        this.wordFormCache = new WordFormCache(sitesList.getWordFormCacheSize());
+
         try {
 
             this.russianMorphology = new RussianLuceneMorphology();
@@ -76,90 +107,176 @@ public class LemmaService {
 
 
     public Map<String, Integer> getLemmas(String text) {
-        Map<String, Integer> lemmas = new HashMap<>();
+        return countLemmas(text).toMap();
+    }
 
-        if (text == null || text.trim().isEmpty()) {
-            return lemmas;
-        }
+    /**
+     * Считает леммы текста без упаковки счётчиков в {@code Integer}.
+     * Возвращает счётчик текущего потока, который очищается при следующем
+     * вызове в этом же потоке: его нельзя хранить или передавать другому
+     * потоку, для этого есть {@link TermCounter#copy()}.
+     */
+    public TermCounter countLemmas(String text) {
+        TermCounter counter = threadCounter.get();
+        counter.clear();
+        forEachLemma(text, (lemma, position, start, end) -> counter.add(lemma));
+        return counter;
+    }
 
-        String cleanedText = text.toLowerCase()
-                .replaceAll("[^а-яёa-z\\s]", " ")
-                .replaceAll("\\s+", " ")
-                .trim();
+    /**
+     * То же, что {@link #countLemmas}, но счётчик текущего потока также
+     * запоминает вхождения лемм: номера слов и смещения символов в {@code text}.
+     */
+    public TermCounter countLemmaPositions(String text) {
+        TermCounter counter = threadCounter.get();
+        counter.clear();
+        forEachLemma(text, counter::addOccurrence);
+        return counter;
+    }
 
-        if (cleanedText.isEmpty()) {
-            return lemmas;
-        }
+    /**
+     * Вхождения лемм текста: номера слов и смещения символов в {@code text}.
+     * Число вхождений леммы совпадает с её счётчиком в {@link #countLemmas}.
+     */
+    public Map<String, PositionList> getLemmaPositions(String text) {
+        Map<String, PositionList> positions = new HashMap<>();
+        forEachLemma(text, (lemma, position, start, end) ->
+                positions.computeIfAbsent(lemma, key -> new PositionList()).add(position, start, end));
+        return positions;
+    }
 
-        String[] words = cleanedText.split("\\s+");
+    /**
+     * Передаёт каждое вхождение леммы в тексте. Номера слов считаются
+     * по всем словам текста, включая стоп-слова.
+     */
+    private void forEachLemma(String text, LemmaSink sink) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
 
-        for (String word : words) {
-            if (word.length() < 2 ||
-                    russianStopWords.contains(word) ||
-                    englishStopWords.contains(word)) {
-                continue;
+        WordTokenizer.tokenize(text, MIN_WORD_LENGTH, (word, script, position, start, end) -> {
+            if (russianStopWords.contains(word) || englishStopWords.contains(word)) {
+                return;
             }
 
+            String lemma;
             try {
-                boolean isCyrillic = cyrillicPattern.matcher(word).matches();
-                boolean isLatin = latinPattern.matcher(word).matches();
-
-                if (isCyrillic && russianMorphology != null) {
-                    processRussianWord(word, lemmas);
+                if (script == WordTokenizer.Script.CYRILLIC && russianMorphology != null) {
+                    lemma = lemmaOf(word, russianMorphology);
 
-                } else if (isLatin && englishMorphology != null) {
-                    processEnglishWord(word, lemmas);
+                } else if (script == WordTokenizer.Script.LATIN && englishMorphology != null) {
+                    lemma = lemmaOf(word, englishMorphology);
 
                 } else {
 
-                    lemmas.put(word, lemmas.getOrDefault(word, 0) + 1);
+                    lemma = word;
                 }
 
             } catch (Exception e) {
 
-                lemmas.put(word, lemmas.getOrDefault(word, 0) + 1);
+                lemma = word;
             }
-        }
 
-        return lemmas;
+            if (lemma != WordFormCache.NO_LEMMA) {
+                sink.accept(lemma, position, start, end);
+            }
+        });
     }
 
-    private void processRussianWord(String word, Map<String, Integer> lemmas) {
-        List<String> normalForms = russianMorphology.getNormalForms(word);
+    /**
+     * Лемматизирует документы параллельно: каждый документ — отдельная
+     * задача пула {@code executor}. Результат передаётся {@code consumer}
+     * в потоке пула сразу, как только документ готов; счётчик принадлежит
+     * получателю. Документ, на котором лемматизация упала, получает пустой
+     * счётчик.
+     *
+     * @return завершается, когда все документы переданы {@code consumer}
+     */
+    public <T> CompletableFuture<Void> lemmatizeAll(Collection<T> documents, Function<T, String> text,
+                                                    Executor executor, LemmaConsumer<T> consumer) {
+        return lemmatizeAll(documents, text, false, executor, consumer);
+    }
 
-        if (normalForms == null || normalForms.isEmpty()) {
-            return;
+    /**
+     * То же, что {@link #lemmatizeAll(Collection, Function, Executor, LemmaConsumer)};
+     * при {@code withPositions} счётчик получателя также хранит вхождения лемм.
+     * Леммы и вхождения собираются в переиспользуемом счётчике потока пула,
+     * получатель получает его копию по размеру содержимого.
+     */
+    public <T> CompletableFuture<Void> lemmatizeAll(Collection<T> documents, Function<T, String> text,
+                                                    boolean withPositions, Executor executor,
+                                                    LemmaConsumer<T> consumer) {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(documents.size());
+        for (T document : documents) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                TermCounter lemmas;
+                try {
+                    String value = text.apply(document);
+                    lemmas = (withPositions ? countLemmaPositions(value) : countLemmas(value)).copy();
+                } catch (RuntimeException e) {
+                    log.warn("Не удалось лемматизировать документ: {}", e.getMessage());
+                    lemmas = new TermCounter();
+                }
+                consumer.accept(document, lemmas);
+            }, executor));
         }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
 
-        List<String> morphInfo = russianMorphology.getMorphInfo(word);
-
-        if (isServiceWord(morphInfo)) {
-            return;
+    /**
+     * Лемматизирует тексты параллельно и ждёт результата.
+     *
+     * @return счётчики лемм в порядке текстов
+     */
+    public List<TermCounter> countLemmasAll(List<String> texts, Executor executor) {
+        TermCounter[] results = new TermCounter[texts.size()];
+        List<Integer> indexes = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            indexes.add(i);
         }
-
-        String lemma = normalForms.get(0);
-
-        lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
+        lemmatizeAll(indexes, texts::get, executor, (index, lemmas) -> results[index] = lemmas).join();
+        return Arrays.asList(results);
     }
 
-    private void processEnglishWord(String word, Map<String, Integer> lemmas) {
-        List<String> normalForms = englishMorphology.getNormalForms(word);
-
-        if (normalForms == null || normalForms.isEmpty()) {
-            return;
+    /**
+     * Лемма словоформы из кэша или, при промахе, из морфологии.
+     *
+     * @return лемма или {@link WordFormCache#NO_LEMMA} для служебных и неизвестных слов
+     */
+    private String lemmaOf(String word, LuceneMorphology morphology) {
+        String lemma = wordFormCache.get(word);
+        if (lemma == null) {
+            lemma = findLemma(word, morphology);
+            wordFormCache.put(word, lemma);
         }
+        return lemma;
+    }
 
-        List<String> morphInfo = englishMorphology.getMorphInfo(word);
+    private String findLemma(String word, LuceneMorphology morphology) {
+        try {
+            List<String> normalForms = morphology.getNormalForms(word);
 
-        if (isServiceWord(morphInfo)) {
-            return;
-        }
+            if (normalForms == null || normalForms.isEmpty()) {
+                return WordFormCache.NO_LEMMA;
+            }
 
-        String lemma = normalForms.get(0);
+            if (isServiceWord(morphology.getMorphInfo(word))) {
+                return WordFormCache.NO_LEMMA;
+            }
 
-        lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
+            return normalForms.get(0);
+        } catch (RuntimeException e) {
+            // Словоформа, которую морфология не разбирает, считается леммой сама по себе.
+            return word;
+        }
     }
 
+    /**
+     * Статистика кэша словоформ.
+     */
+    public WordFormCache getWordFormCache() {
+        return wordFormCache;
+    }
 
     private boolean isServiceWord(List<String> morphInfo) {
         if (morphInfo == null || morphInfo.isEmpty()) {
@@ -177,99 +294,28 @@ public class LemmaService {
         return false;
     }
 
+    /**
+     * Видимый текст страницы с заголовком в начале. Разбор идёт за один
+     * проход {@link HtmlTextExtractor}.
+     */
     public String cleanHtml(String html) {
-        if (html == null || html.trim().isEmpty()) {
+        if (html == null || html.isBlank()) {
             return "";
         }
 
-        try {
-
-            String withoutScripts = html
-                    .replaceAll("<script[^>]*>.*?</script>", " ")
-                    .replaceAll("<style[^>]*>.*?</style>", " ")
-                    .replaceAll("<!--.*?-->", " ");
-
-            String withSpaces = withoutScripts
-                    .replaceAll("<br[^>]*>", "\n")
-                    .replaceAll("<p[^>]*>", "\n")
-                    .replaceAll("<div[^>]*>", "\n")
-                    .replaceAll("<li[^>]*>", "\n• ")
-                    .replaceAll("<h[1-6][^>]*>", "\n")
-                    .replaceAll("</h[1-6]>", "\n")
-                    .replaceAll("<[^>]+>", " ");
-
-            String decoded = withSpaces
-                    .replaceAll("&nbsp;", " ")
-                    .replaceAll("&quot;", "\"")
-                    .replaceAll("&amp;", "&")
-                    .replaceAll("&lt;", "<")
-                    .replaceAll("&gt;", ">")
-                    .replaceAll("&apos;", "'")
-                    .replaceAll("&#39;", "'")
-                    .replaceAll("&ndash;", "-")
-                    .replaceAll("&mdash;", "-")
-                    .replaceAll("&laquo;", "\"")
-                    .replaceAll("&raquo;", "\"")
-                    .replaceAll("&hellip;", "...");
-
-            String cleaned = decoded
-                    .replaceAll("\\s+", " ")      // Множественные пробелы -> один
-                    .replaceAll("\\n\\s*\\n+", "\n\n") // Убираем пустые строки
-                    .trim();
-
-            String title = extractTitle(html);
-            if (!title.isEmpty()) {
-                cleaned = title + "\n\n" + cleaned;
-            }
-
-            return cleaned;
-
-        } catch (Exception e) {
-            System.err.println("Ошибка при очистке HTML: " + e.getMessage());
-            return html.replaceAll("<[^>]+>", " ").replaceAll("\\s+", " ").trim();
-        }
-    }
-
-    private String extractTitle(String html) {
-        try {
-            int titleStart = html.indexOf("<title");
-            if (titleStart == -1) {
-                return "";
-            }
-
-            titleStart = html.indexOf(">", titleStart) + 1;
-            int titleEnd = html.indexOf("</title>", titleStart);
-
-            if (titleEnd > titleStart) {
-                return html.substring(titleStart, titleEnd).trim();
-            }
-        } catch (Exception e) {
-
+        HtmlTextExtractor.ExtractedText extracted = HtmlTextExtractor.extract(html);
+        if (extracted.getTitle().isEmpty()) {
+            return extracted.getText();
         }
-        return "";
+        return extracted.getTitle() + "\n\n" + extracted.getText();
     }
 
+    /**
+     * @deprecated DOM больше не строится; то же, что {@link #cleanHtml}, в одну строку.
+     */
+    @Deprecated
     public String cleanHtmlWithJsoup(String html) {
-        if (html == null || html.trim().isEmpty()) {
-            return "";
-        }
-
-        try {
-            org.jsoup.nodes.Document doc = Jsoup.parse(html);
-            doc.select("script, style, noscript, iframe, object, embed").remove();
-
-            String title = doc.title();
-
-            String bodyText = doc.body().text();
-
-            String result = title.isEmpty() ? bodyText : title + "\n\n" + bodyText;
-
-            return result.replaceAll("\\s+", " ").trim();
-
-        } catch (Exception e) {
-
-            return cleanHtml(html);
-        }
+        return cleanHtml(html).replace("\n\n", " ");
     }
 
     public Set<String> getUniqueLemmas(String text) {
@@ -277,10 +323,10 @@ public class LemmaService {
     }
 
     public List<Map.Entry<String, Integer>> getSortedLemmas(String text) {
-        Map<String, Integer> lemmas = getLemmas(text);
-        return lemmas.entrySet().stream()
-                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                .collect(Collectors.toList());
+        List<Map.Entry<String, Integer>> lemmas = new ArrayList<>();
+        countLemmas(text).forEach((lemma, count) -> lemmas.add(Map.entry(lemma, count)));
+        lemmas.sort((e1, e2) -> Integer.compare(e2.getValue(), e1.getValue()));
+        return lemmas;
     }
 
     public void testLemmatization() {
@@ -0,0 +1,132 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс отпечатков SimHash страниц одного сайта. Отпечаток делится на
+ * {@code maxDistance + 1} полос; если два отпечатка отличаются не больше
+ * чем в {@code maxDistance} битах, хотя бы одна полоса у них совпадает,
+ * поэтому сравнивать нужно только страницы с общей полосой.
+ */
+public class NearDuplicateIndex {
+
+    private final int maxDistance;
+    private final int[] bandStarts;
+    private final List<Map<Long, List<Entry>>> bands = new ArrayList<>();
+    /** Текущий отпечаток каждой страницы; у страницы в индексе одна запись. */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    public NearDuplicateIndex(int maxDistance) {
+        this.maxDistance = Math.max(0, Math.min(Long.SIZE - 1, maxDistance));
+        int bandCount = this.maxDistance + 1;
+        this.bandStarts = new int[bandCount + 1];
+        for (int band = 0; band <= bandCount; band++) {
+            bandStarts[band] = band * Long.SIZE / bandCount;
+        }
+        for (int band = 0; band < bandCount; band++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Ищет страницу, почти совпадающую с данной, а если её нет, добавляет
+     * данную страницу в индекс.
+     *
+     * @return найденная страница или {@code null}
+     */
+    public synchronized Match findOrAdd(String path, long fingerprint) {
+        Match match = find(path, fingerprint);
+        if (match == null) {
+            add(path, fingerprint);
+        }
+        return match;
+    }
+
+    /**
+     * Добавляет отпечаток страницы; прежний отпечаток той же страницы,
+     * например до изменения её содержимого, удаляется из индекса.
+     */
+    public synchronized void add(String path, long fingerprint) {
+        Entry entry = new Entry(path, fingerprint);
+        Entry previous = entries.put(path, entry);
+        if (previous != null) {
+            remove(previous);
+        }
+        for (int band = 0; band < bands.size(); band++) {
+            bands.get(band).computeIfAbsent(bandKey(fingerprint, band), key -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    /**
+     * Удаляет отпечаток страницы, например когда страница перестала отвечать.
+     */
+    public synchronized void remove(String path) {
+        Entry entry = entries.remove(path);
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        for (int band = 0; band < bands.size(); band++) {
+            Map<Long, List<Entry>> buckets = bands.get(band);
+            long key = bandKey(entry.fingerprint, band);
+            List<Entry> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ищет ближайшую другую страницу; собственный отпечаток страницы,
+     * если он уже в индексе, пропускается.
+     */
+    private Match find(String path, long fingerprint) {
+        Match best = null;
+        for (int band = 0; band < bands.size(); band++) {
+            List<Entry> candidates = bands.get(band).get(bandKey(fingerprint, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry candidate : candidates) {
+                if (candidate.path.equals(path)) {
+                    continue;
+                }
+                int distance = SimHash.distance(candidate.fingerprint, fingerprint);
+                if (distance <= maxDistance && (best == null || distance < best.getDistance())) {
+                    best = new Match(candidate.path, distance);
+                }
+            }
+        }
+        return best;
+    }
+
+    private long bandKey(long fingerprint, int band) {
+        int width = bandStarts[band + 1] - bandStarts[band];
+        long mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+        return fingerprint >>> bandStarts[band] & mask;
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final String path;
+        private final long fingerprint;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Match {
+        private final String path;
+        private final int distance;
+    }
+}
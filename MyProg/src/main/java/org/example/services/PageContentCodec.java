@@ -0,0 +1,130 @@
+package org.example.services;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+import org.example.config.SitesList;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие содержимого страниц в колонке {@code page.content}. Сжатое
+ * содержимое хранится как {@code z1:} и Base64 от deflate с заранее
+ * заданным словарём частых фрагментов HTML, поэтому помещается в ту же
+ * текстовую колонку. Строки без префикса считаются несжатыми, так что
+ * ранее сохранённые страницы читаются как прежде.
+ * <p>
+ * Используется как конвертер JPA для {@code Page.content} и напрямую
+ * при пакетной записи через JDBC.
+ */
+@Component
+@Converter
+@RequiredArgsConstructor
+public class PageContentCodec implements AttributeConverter<String, String> {
+
+    private static final String DEFLATE_PREFIX = "z1:";
+
+    /**
+     * Словарь для deflate: частые фрагменты HTML-страниц. Менять нельзя,
+     * иначе сохранённые с префиксом {@code z1:} страницы не прочитаются;
+     * для нового словаря нужен новый префикс.
+     */
+    private static final byte[] HTML_DICTIONARY = (
+            "<!DOCTYPE html><html lang=\"ru\"><head><meta charset=\"utf-8\">" +
+            "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">" +
+            "<meta name=\"description\" content=\"<meta property=\"og:title\" content=\"" +
+            "<link rel=\"stylesheet\" href=\"<link rel=\"canonical\" href=\"https://" +
+            "<script type=\"text/javascript\" src=\"</script><script>" +
+            "<style></style><noscript></noscript><title></title></head><body>" +
+            "<header class=\"header\"><nav class=\"nav\"><ul class=\"menu\"><li class=\"menu__item\">" +
+            "<a class=\"link\" href=\"/\"></a></li></ul></nav></header>" +
+            "<main><section class=\"section\"><article><h1></h1><h2></h2><h3></h3>" +
+            "<p></p><span></span><strong></strong><br><img src=\"\" alt=\"\" width=\"\" height=\"\">" +
+            "<table><tbody><tr><td></td></tr></tbody></table>" +
+            "<form action=\"\" method=\"post\"><input type=\"hidden\" name=\"\" value=\"\"><button type=\"submit\">" +
+            "</button></form><footer class=\"footer\"></footer>" +
+            "<div class=\"container\"><div class=\"row\"><div class=\"col\"><div id=\"\"></div></div></div></div>" +
+            "</div>\n</div>\n</a>\n</li>\n</body></html>"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final SitesList sitesList;
+
+    /**
+     * Готовит содержимое к записи: сжимает, если сжатие включено.
+     */
+    public String encode(String content) {
+        if (content == null || content.isEmpty() || !sitesList.isCompressContent()) {
+            return content;
+        }
+        return DEFLATE_PREFIX + Base64.getEncoder().encodeToString(deflate(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Возвращает исходное содержимое; несжатые строки возвращаются как есть.
+     */
+    public static String decode(String stored) {
+        if (stored == null || !stored.startsWith(DEFLATE_PREFIX)) {
+            return stored;
+        }
+        byte[] compressed = Base64.getDecoder().decode(stored.substring(DEFLATE_PREFIX.length()));
+        return new String(inflate(compressed), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        return encode(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        return decode(dbData);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setDictionary(HTML_DICTIONARY);
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(HTML_DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new IllegalStateException("Сжатое содержимое страницы повреждено");
+                    }
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Сжатое содержимое страницы повреждено", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
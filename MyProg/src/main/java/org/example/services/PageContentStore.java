@@ -0,0 +1,42 @@
+package org.example.services;
+
+import org.example.model.Page;
+
+import java.io.IOException;
+
+/**
+ * Хранилище содержимого страниц. Содержимое либо остаётся в строке
+ * {@code page}, либо записывается вне базы, и тогда в строке хранится
+ * только ссылка на него.
+ */
+public interface PageContentStore {
+
+    /**
+     * Сохраняет содержимое страницы.
+     *
+     * @return место содержимого вне базы или {@code null}, если содержимое
+     * нужно записать в колонку {@code page.content}
+     */
+    ContentRef write(String content) throws IOException;
+
+    /**
+     * Читает содержимое, сохранённое вне базы.
+     */
+    String read(ContentRef ref) throws IOException;
+
+    /**
+     * Сбрасывает записанное на диск. Вызывается перед записью ссылок в базу,
+     * чтобы строка {@code page} не ссылалась на потерянные данные.
+     */
+    void sync() throws IOException;
+
+    /**
+     * Возвращает содержимое страницы, где бы оно ни хранилось.
+     */
+    default String load(Page page) throws IOException {
+        if (page.getContentLength() == null) {
+            return page.getContent();
+        }
+        return read(new ContentRef(page.getContentSegment(), page.getContentOffset(), page.getContentLength()));
+    }
+}
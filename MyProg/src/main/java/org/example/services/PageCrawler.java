@@ -0,0 +1,523 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.ContentStorageMode;
+import org.example.config.SitesList;
+import org.example.model.Page;
+import org.example.model.Site;
+import org.example.repositories.PageAliasRepository;
+import org.example.repositories.PageRepository;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Entities;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обработка одного адреса из границы обхода: загрузка страницы,
+ * сохранение и постановка найденных ссылок в очередь сайта.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PageCrawler {
+
+    private final PageWriter pageWriter;
+    private final PageReindexer pageReindexer;
+    private final PageRepository pageRepository;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final PageAliasRepository pageAliasRepository;
+    private final PageContentStore contentStore;
+    private final SitesList sitesList;
+
+    private static final List<String> EXCLUDED_EXTENSIONS = Arrays.asList(
+            ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".webp", ".svg",
+            ".ico", ".pdf", ".doc", ".docx", ".xls", ".xlsx", ".ppt", ".pptx",
+            ".zip", ".rar", ".7z", ".tar", ".gz",
+            ".mp3", ".mp4", ".avi", ".mov", ".wmv",
+            ".css", ".js", ".json", ".xml"
+    );
+
+    private static final int CHARSET_SNIFF_BYTES = 2048;
+    private static final Pattern CONTENT_TYPE_CHARSET =
+            Pattern.compile("charset\\s*=\\s*([^\\s;]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Обрабатывает адрес.
+     *
+     * @return итог запроса к хосту для подстройки скорости обхода
+     */
+    public FetchOutcome crawl(CrawlFrontier frontier, String url) {
+        if (shouldExcludeUrl(url)) {
+            return FetchOutcome.SKIPPED;
+        }
+
+        PageValidators known = frontier.takeKnownPage(url);
+        long started = System.nanoTime();
+        FetchedPage page;
+        try {
+            page = fetch(url, known);
+        } catch (SocketTimeoutException e) {
+            log.warn("Истекло время загрузки страницы {}", url);
+            FetchOutcome outcome = FetchOutcome.timeout(System.nanoTime() - started);
+            if (!retryLater(frontier, url, known)) {
+                saveFailedPage(frontier, url, known, 404, PageValidators.NONE);
+            }
+            return outcome;
+        } catch (IOException e) {
+            log.warn("Не удалось загрузить страницу {}: {}", url, e.getMessage());
+            saveFailedPage(frontier, url, known, 404, PageValidators.NONE);
+            return FetchOutcome.failure(System.nanoTime() - started);
+        }
+        long latency = System.nanoTime() - started;
+
+        if (page == null) {
+            return new FetchOutcome(200, latency, false, 0);
+        }
+
+        FetchOutcome outcome = new FetchOutcome(page.getCode(), latency, false, page.getRetryAfterMillis());
+        if (outcome.isOverloaded() && retryLater(frontier, url, known)) {
+            return outcome;
+        }
+
+        handlePage(frontier, url, known, page);
+        return outcome;
+    }
+
+    private void handlePage(CrawlFrontier frontier, String url, PageValidators known,
+                            FetchedPage page) {
+        Site site = frontier.getSite();
+
+        if (page.isNotModified()) {
+            offerLinks(frontier, loadStoredLinks(site, url));
+            return;
+        }
+
+        if (page.getParsed() == null) {
+            saveFailedPage(frontier, url, known, page.getCode(), page.getValidators());
+            return;
+        }
+
+        List<String> links = page.getParsed().getLinks();
+        String canonical = canonicalOf(page.getParsed(), frontier.getSite().getUrl());
+        if (canonical != null && !canonical.equals(url) && frontier.redirectToCanonical(url, canonical)) {
+            log.debug("Страница {} — копия {}", url, canonical);
+            frontier.offer(canonical);
+            offerLinks(frontier, links);
+            return;
+        }
+
+        if (known == null && isNearDuplicate(frontier, url, page.getValidators())) {
+            offerLinks(frontier, links);
+            return;
+        }
+
+        if (known == null) {
+            savePage(site, url, contentToStore(page), textOf(page), page.getCode(), page.getValidators());
+        } else if (!Objects.equals(known.getContentHash(), page.getValidators().getContentHash())) {
+            pageReindexer.reindexPage(site, url, page.getCode(), contentToStore(page), textOf(page),
+                    page.getValidators());
+            NearDuplicateIndex index = frontier.getDuplicateIndex();
+            if (index != null && page.getValidators().getSimhash() != null) {
+                index.add(url, page.getValidators().getSimhash());
+            }
+        } else {
+            log.debug("Страница {} не изменилась", url);
+        }
+
+        offerLinks(frontier, links);
+    }
+
+    /**
+     * Сохраняет страницу, которая не загрузилась или ответила ошибкой.
+     * Если страница была проиндексирована в прошлом обходе, её строки
+     * индекса удаляются, а частоты лемм уменьшаются в одной транзакции.
+     */
+    private void saveFailedPage(CrawlFrontier frontier, String url, PageValidators known, int code,
+                                PageValidators validators) {
+        Site site = frontier.getSite();
+        if (known == null) {
+            savePage(site, url, "", PageText.EMPTY, code, validators);
+            return;
+        }
+
+        pageReindexer.reindexPage(site, url, code, "", PageText.EMPTY, validators);
+        NearDuplicateIndex index = frontier.getDuplicateIndex();
+        if (index != null) {
+            index.remove(url);
+        }
+    }
+
+    /**
+     * Откладывает адрес перегруженного хоста на потом, сохранив признаки
+     * прошлой версии страницы.
+     */
+    private boolean retryLater(CrawlFrontier frontier, String url, PageValidators known) {
+        if (!frontier.retryLater(url, sitesList.getMaxFetchRetries())) {
+            return false;
+        }
+        if (known != null) {
+            frontier.addKnownPage(url, known);
+        }
+        log.debug("Хост перегружен, страница {} будет загружена позже", url);
+        return true;
+    }
+
+    private void offerLinks(CrawlFrontier frontier, List<String> links) {
+        String siteUrl = frontier.getSite().getUrl();
+        for (String link : links) {
+            String absUrl = urlCanonicalizer.canonicalize(link, siteUrl);
+
+            if (isCrawlable(absUrl, siteUrl)) {
+                frontier.offer(absUrl);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, не совпадает ли новая страница почти полностью с уже
+     * сохранённой, и если совпадает, записывает её как псевдоним.
+     */
+    private boolean isNearDuplicate(CrawlFrontier frontier, String url, PageValidators validators) {
+        NearDuplicateIndex index = frontier.getDuplicateIndex();
+        if (index == null || validators.getSimhash() == null) {
+            return false;
+        }
+
+        NearDuplicateIndex.Match match = index.findOrAdd(url, validators.getSimhash());
+        if (match == null) {
+            return false;
+        }
+
+        log.debug("Страница {} почти совпадает с {} (отличие {} бит)", url, match.getPath(), match.getDistance());
+        pageAliasRepository.upsert(frontier.getSite().getId(), url, match.getPath(), match.getDistance());
+        return true;
+    }
+
+    /**
+     * Канонический адрес из {@code <link rel="canonical">}, если он указывает
+     * на страницу того же сайта.
+     */
+    private String canonicalOf(HtmlPageScanner.ScannedPage parsed, String siteUrl) {
+        if (parsed.getCanonical() == null) {
+            return null;
+        }
+        String canonical = urlCanonicalizer.canonicalize(parsed.getCanonical(), siteUrl);
+        return isCrawlable(canonical, siteUrl) ? canonical : null;
+    }
+
+    private List<String> loadStoredLinks(Site site, String url) {
+        return pageRepository.findByPathAndSite(url, site)
+                .map(page -> {
+                    try {
+                        return HtmlPageScanner.scan(contentStore.load(page), url).getLinks();
+                    } catch (IOException e) {
+                        log.warn("Не удалось прочитать содержимое страницы {}: {}", url, e.getMessage());
+                        return List.<String>of();
+                    }
+                })
+                .orElse(List.of());
+    }
+
+    public FetchedPage fetch(String url) throws IOException {
+        return fetch(url, null);
+    }
+
+    /**
+     * Загружает страницу одним запросом. Если известны признаки прошлой
+     * версии страницы, запрос делается условным. Тело читается потоком
+     * не больше {@code maxBodyBytes} байт, только если ответ — HTML,
+     * и разбирается за один проход без построения DOM.
+     *
+     * @return страница или {@code null}, если по адресу находится не HTML;
+     * для ответов с ошибкой тело не читается
+     */
+    public FetchedPage fetch(String url, PageValidators known) throws IOException {
+        Connection connection = Jsoup.connect(url)
+                .userAgent("HeliontSearchBot")
+                .referrer("http://www.google.com")
+                .timeout((int) sitesList.getFetchTimeout())
+                .maxBodySize(0)
+                .followRedirects(true)
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true);
+
+        // В сохранённом тексте нет ссылок, поэтому без HTML ответ 304
+        // не дал бы продолжить обход со страницы.
+        boolean conditional = known != null && sitesList.getContentMode() == ContentStorageMode.HTML;
+        if (conditional && known.getEtag() != null) {
+            connection.header("If-None-Match", known.getEtag());
+        }
+        if (conditional && known.getLastModified() != null) {
+            connection.header("If-Modified-Since", known.getLastModified());
+        }
+
+        Connection.Response response = connection.execute();
+
+        if (response.statusCode() == 304) {
+            return new FetchedPage(304, null, null, known, true, 0);
+        }
+
+        if (!isHtml(response)) {
+            log.debug("Пропущена страница {} с типом {}", url, response.contentType());
+            response.bodyStream().close();
+            return null;
+        }
+
+        if (response.statusCode() >= 400) {
+            response.bodyStream().close();
+            return new FetchedPage(response.statusCode(), null, null, PageValidators.NONE, false,
+                    parseRetryAfter(response.header("Retry-After")));
+        }
+
+        MessageDigest digest = sha256();
+        byte[] body = readBody(response, digest, url);
+        String html = new String(body, detectCharset(response.contentType(), body));
+        HtmlPageScanner.ScannedPage parsed = HtmlPageScanner.scan(html, response.url().toExternalForm());
+
+        PageValidators validators = new PageValidators(
+                response.header("ETag"), response.header("Last-Modified"), HexFormat.of().formatHex(digest.digest()),
+                SimHash.fingerprint(parsed.getText(), sitesList.getNearDuplicateMinWords()));
+
+        return new FetchedPage(response.statusCode(), parsed, html, validators, false, 0);
+    }
+
+    /**
+     * Содержимое страницы для сохранения: HTML целиком или, в режиме
+     * {@link ContentStorageMode#TEXT}, только заголовок и текст.
+     */
+    public String contentToStore(FetchedPage page) {
+        if (page.getParsed() == null) {
+            return page.getHtml() != null ? page.getHtml() : "";
+        }
+        if (sitesList.getContentMode() == ContentStorageMode.TEXT) {
+            return "<html><head><title>" + Entities.escape(page.getParsed().getTitle()) + "</title></head><body>"
+                    + Entities.escape(page.getParsed().getText()) + "</body></html>";
+        }
+        return page.getHtml();
+    }
+
+    /**
+     * Заголовок и текст страницы для сохранения рядом с содержимым.
+     */
+    public PageText textOf(FetchedPage page) {
+        return page.getParsed() != null ? PageText.of(page.getParsed()) : PageText.EMPTY;
+    }
+
+    /**
+     * Читает тело ответа, пока не наберётся {@code maxBodyBytes} байт;
+     * остаток не загружается.
+     */
+    private byte[] readBody(Connection.Response response, MessageDigest digest, String url) throws IOException {
+        long limit = sitesList.getMaxBodyBytes() > 0 ? sitesList.getMaxBodyBytes() : Long.MAX_VALUE;
+        String lengthHeader = response.header("Content-Length");
+        int expected = 8192;
+        if (lengthHeader != null) {
+            try {
+                expected = (int) Math.min(Math.min(limit, Long.parseLong(lengthHeader.trim())), 1 << 20);
+            } catch (NumberFormatException ignored) {
+                // размер неизвестен
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(expected, 1024));
+        byte[] buffer = new byte[8192];
+        try (InputStream in = response.bodyStream()) {
+            long total = 0;
+            int read;
+            while (total < limit && (read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - total))) != -1) {
+                out.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+                total += read;
+            }
+            if (total >= limit) {
+                log.debug("Страница {} обрезана до {} байт", url, limit);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Кодировка страницы: из заголовка Content-Type, по BOM или по тегу
+     * {@code <meta>} в начале документа; по умолчанию UTF-8.
+     */
+    static Charset detectCharset(String contentType, byte[] body) {
+        Charset charset = charsetFrom(contentType);
+        if (charset != null) {
+            return charset;
+        }
+
+        if (body.length >= 3 && (body[0] & 0xFF) == 0xEF && (body[1] & 0xFF) == 0xBB && (body[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (body.length >= 2 && (body[0] & 0xFF) == 0xFE && (body[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (body.length >= 2 && (body[0] & 0xFF) == 0xFF && (body[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+
+        String head = new String(body, 0, Math.min(body.length, CHARSET_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+        Matcher meta = META_CHARSET.matcher(head);
+        if (meta.find()) {
+            charset = charsetFrom("charset=" + meta.group(1));
+            if (charset != null) {
+                return charset;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Charset charsetFrom(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_TYPE_CHARSET.matcher(contentType);
+        if (!matcher.find()) {
+            return null;
+        }
+        String name = matcher.group(1).trim().replace("\"", "").replace("'", "");
+        try {
+            return Charset.isSupported(name) ? Charset.forName(name) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return пауза из заголовка Retry-After в миллисекундах, {@code 0} если её нет
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(Instant.now(), date.toInstant()).toMillis());
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Тип содержимого и расширение проверяются по ответу основного запроса,
+     * в том числе для адреса, на который произошло перенаправление.
+     */
+    private boolean isHtml(Connection.Response response) {
+        String contentType = response.contentType();
+        if (contentType != null) {
+            String lowerType = contentType.toLowerCase();
+            if (!lowerType.startsWith("text/html") && !lowerType.startsWith("application/xhtml+xml")) {
+                return false;
+            }
+        }
+
+        return !hasExcludedExtension(response.url().getPath());
+    }
+
+    public boolean isCrawlable(String url, String siteUrl) {
+        return urlCanonicalizer.belongsToSite(url, siteUrl) && !shouldExcludeUrl(url)
+                && url.length() <= Page.MAX_PATH_LENGTH;
+    }
+
+    /**
+     * Быстрая проверка адреса без сетевых запросов.
+     */
+    private boolean shouldExcludeUrl(String url) {
+        if (url == null || url.isEmpty()) {
+            return true;
+        }
+
+        String lowerUrl = url.toLowerCase();
+
+        if (lowerUrl.startsWith("mailto:")) {
+            return true;
+        }
+
+        if (lowerUrl.startsWith("tel:")) {
+            return true;
+        }
+
+        if (lowerUrl.startsWith("javascript:")) {
+            return true;
+        }
+
+        if (lowerUrl.contains("#")) {
+            return true;
+        }
+
+        return hasExcludedExtension(lowerUrl);
+    }
+
+    private boolean hasExcludedExtension(String path) {
+        if (path == null) {
+            return false;
+        }
+
+        String lowerPath = path.toLowerCase();
+        for (String ext : EXCLUDED_EXTENSIONS) {
+            if (lowerPath.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private void savePage(Site site, String urlPath, String content, PageText text, int code,
+                          PageValidators validators) {
+        try {
+            pageWriter.submit(site, urlPath, code, content, text, validators);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class FetchedPage {
+        private final int code;
+        /** Результат разбора страницы; {@code null} для ответов с ошибкой. */
+        private final HtmlPageScanner.ScannedPage parsed;
+        private final String html;
+        private final PageValidators validators;
+        private final boolean notModified;
+        private final long retryAfterMillis;
+    }
+}
@@ -0,0 +1,188 @@
+package org.example.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.SitesList;
+import org.example.model.Page;
+import org.example.model.Site;
+import org.example.repositories.PageRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Переиндексация одной страницы. Сравнивает старый и новый наборы лемм
+ * страницы и меняет только затронутые строки таблиц lemma и index.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PageReindexer {
+
+    private static final String SELECT_PAGE_LEMMAS_SQL =
+            "SELECT i.id, i.lemma_id, l.lemma, i.`rank` FROM `index` i " +
+            "JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id = ?";
+
+    private static final String UPSERT_LEMMA_SQL =
+            "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, 1) " +
+            "ON DUPLICATE KEY UPDATE frequency = frequency + 1";
+
+    private static final String DECREMENT_LEMMA_SQL =
+            "UPDATE lemma SET frequency = GREATEST(frequency - 1, 0) WHERE id = ?";
+
+    private static final String DELETE_INDEX_SQL = "DELETE FROM `index` WHERE id = ?";
+
+    private static final String UPDATE_INDEX_SQL = "UPDATE `index` SET `rank` = ?, positions = ? WHERE id = ?";
+
+    private static final String INSERT_INDEX_SQL =
+            "INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES (?, ?, ?, ?)";
+
+    private static final int MAX_LEMMA_LENGTH = 255;
+
+    private final PageRepository pageRepository;
+    private final LemmaService lemmaService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PageContentStore contentStore;
+    private final SitesList sitesList;
+
+    /**
+     * Сохраняет страницу и приводит её строки индекса к новому содержимому
+     * в одной транзакции. Строки лемм с нулевой частотой не удаляются:
+     * их идентификаторы могут быть закэшированы в {@link LemmaIndexer}.
+     */
+    @Transactional
+    public void reindexPage(Site site, String path, int code, String html, PageText text,
+                            PageValidators validators) {
+        Page page = pageRepository.findByPathAndSite(path, site).orElseGet(() -> {
+            Page newPage = new Page();
+            newPage.setSite(site);
+            newPage.setPath(path);
+            return newPage;
+        });
+        ContentRef ref = storeContent(html);
+        page.setCode(code);
+        page.setContent(ref != null ? "" : html);
+        page.setContentSegment(ref != null ? ref.getSegment() : null);
+        page.setContentOffset(ref != null ? ref.getOffset() : null);
+        page.setContentLength(ref != null ? ref.getLength() : null);
+        page.setTitle(text.getTitle());
+        page.setText(text.getText());
+        page.setEtag(validators.getEtag());
+        page.setLastModified(validators.getLastModified());
+        page.setContentHash(validators.getContentHash());
+        page.setSimhash(validators.getSimhash());
+        page = pageRepository.saveAndFlush(page);
+
+        Map<String, IndexRow> oldLemmas = new HashMap<>();
+        jdbcTemplate.query(SELECT_PAGE_LEMMAS_SQL, rs -> {
+            oldLemmas.put(rs.getString(3), new IndexRow(rs.getInt(1), rs.getInt(2), rs.getFloat(4)));
+        }, page.getId());
+
+        Map<String, PositionList> newLemmas = new HashMap<>();
+        if (code < 400 && !html.isEmpty()) {
+            lemmaService.getLemmaPositions(text.indexedText()).forEach((lemma, positions) -> {
+                if (lemma.length() <= MAX_LEMMA_LENGTH) {
+                    newLemmas.put(lemma, positions);
+                }
+            });
+        }
+
+        // Вхождения хранят смещения в тексте, поэтому при их хранении обновляются все оставшиеся строки.
+        boolean storePositions = sitesList.isStoreLemmaPositions();
+        List<Object[]> removed = new ArrayList<>();
+        List<Object[]> decremented = new ArrayList<>();
+        List<Object[]> changed = new ArrayList<>();
+        oldLemmas.forEach((lemma, row) -> {
+            PositionList positions = newLemmas.get(lemma);
+            if (positions == null) {
+                removed.add(new Object[]{row.indexId});
+                decremented.add(new Object[]{row.lemmaId});
+            } else if (storePositions || positions.size() != row.rank) {
+                changed.add(new Object[]{(float) positions.size(), encode(positions), row.indexId});
+            }
+        });
+
+        List<String> added = new ArrayList<>();
+        for (String lemma : newLemmas.keySet()) {
+            if (!oldLemmas.containsKey(lemma)) {
+                added.add(lemma);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(DELETE_INDEX_SQL, removed);
+        jdbcTemplate.batchUpdate(DECREMENT_LEMMA_SQL, decremented);
+        jdbcTemplate.batchUpdate(UPDATE_INDEX_SQL, changed);
+
+        if (!added.isEmpty()) {
+            List<Object[]> upserts = new ArrayList<>();
+            for (String lemma : added) {
+                upserts.add(new Object[]{site.getId(), lemma});
+            }
+            jdbcTemplate.batchUpdate(UPSERT_LEMMA_SQL, upserts);
+
+            Map<String, Integer> lemmaIds = new HashMap<>();
+            String placeholders = String.join(", ", Collections.nCopies(added.size(), "?"));
+            List<Object> args = new ArrayList<>(added.size() + 1);
+            args.add(site.getId());
+            args.addAll(added);
+            jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (" + placeholders + ")",
+                    rs -> {
+                        lemmaIds.put(rs.getString(2), rs.getInt(1));
+                    },
+                    args.toArray());
+
+            List<Object[]> inserts = new ArrayList<>();
+            for (String lemma : added) {
+                Integer lemmaId = lemmaIds.get(lemma);
+                if (lemmaId != null) {
+                    PositionList positions = newLemmas.get(lemma);
+                    inserts.add(new Object[]{page.getId(), lemmaId, (float) positions.size(), encode(positions)});
+                }
+            }
+            jdbcTemplate.batchUpdate(INSERT_INDEX_SQL, inserts);
+        }
+
+        log.info("Страница {} переиндексирована: +{} / -{} / ~{} лемм",
+                path, added.size(), removed.size(), changed.size());
+    }
+
+    private byte[] encode(PositionList positions) {
+        return sitesList.isStoreLemmaPositions() ? positions.encode() : null;
+    }
+
+    /**
+     * Записывает содержимое в хранилище; при ошибке оно остаётся в базе.
+     */
+    private ContentRef storeContent(String html) {
+        try {
+            ContentRef ref = contentStore.write(html);
+            if (ref != null) {
+                contentStore.sync();
+            }
+            return ref;
+        } catch (IOException e) {
+            log.warn("Не удалось записать содержимое страницы вне базы, оно будет сохранено в базе: {}",
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    private static class IndexRow {
+        private final int indexId;
+        private final int lemmaId;
+        private final float rank;
+
+        IndexRow(int indexId, int lemmaId, float rank) {
+            this.indexId = indexId;
+            this.lemmaId = lemmaId;
+            this.rank = rank;
+        }
+    }
+}
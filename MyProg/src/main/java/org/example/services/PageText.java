@@ -0,0 +1,47 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Заголовок и видимый текст страницы, извлечённые при обходе.
+ * Хранятся в строке {@code page}, чтобы поиску не приходилось
+ * разбирать HTML.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PageText {
+
+    public static final PageText EMPTY = new PageText("", "");
+
+    /** Длина колонки {@code page.title}. */
+    public static final int MAX_TITLE_LENGTH = 500;
+
+    private static final String TITLE_SEPARATOR = "\n\n";
+
+    private final String title;
+    private final String text;
+
+    public static PageText of(HtmlPageScanner.ScannedPage parsed) {
+        String title = parsed.getTitle();
+        if (title.length() > MAX_TITLE_LENGTH) {
+            title = title.substring(0, MAX_TITLE_LENGTH);
+        }
+        return new PageText(title, parsed.getText());
+    }
+
+    /**
+     * Строка, по которой строятся леммы страницы: заголовок и текст.
+     * Смещения вхождений лемм в индексе отсчитываются от её начала.
+     */
+    public String indexedText() {
+        return title.isEmpty() ? text : title + TITLE_SEPARATOR + text;
+    }
+
+    /**
+     * @return смещение текста страницы в {@link #indexedText()}
+     */
+    public int textOffset() {
+        return title.isEmpty() ? 0 : title.length() + TITLE_SEPARATOR.length();
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Признаки версии страницы для условной повторной загрузки:
+ * заголовки ETag и Last-Modified ответа, хэш тела страницы
+ * и SimHash её текста для поиска почти одинаковых страниц.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PageValidators {
+
+    public static final PageValidators NONE = new PageValidators(null, null, null, null);
+
+    private final String etag;
+    private final String lastModified;
+    private final String contentHash;
+    /** {@code null}, если текст страницы слишком короткий для сравнения. */
+    private final Long simhash;
+}
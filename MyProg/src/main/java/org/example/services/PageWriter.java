@@ -0,0 +1,295 @@
+package org.example.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.SitesList;
+import org.example.model.Page;
+import org.example.model.Site;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отдельная стадия записи страниц в базу. Обходчики кладут страницы
+ * в ограниченную очередь, а поток записи сохраняет их пачками одним
+ * JDBC-батчем. Время статуса сайтов обновляется не чаще одного раза
+ * за интервал. Когда база не успевает, очередь заполняется и обходчики
+ * ждут на {@link #submit}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PageWriter {
+
+    private static final String UPSERT_PAGE_SQL =
+            "INSERT INTO page (site_id, path, code, content, etag, last_modified, content_hash, simhash, " +
+            "content_segment, content_offset, content_length, title, text) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE code = VALUES(code), content = VALUES(content), etag = VALUES(etag), " +
+            "title = VALUES(title), text = VALUES(text), " +
+            "last_modified = VALUES(last_modified), content_hash = VALUES(content_hash), simhash = VALUES(simhash), " +
+            "content_segment = VALUES(content_segment), content_offset = VALUES(content_offset), " +
+            "content_length = VALUES(content_length)";
+
+    private static final String UPDATE_STATUS_TIME_SQL =
+            "UPDATE site SET status_time = ? WHERE id = ?";
+
+    private static final int SELECT_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SitesList sitesList;
+    private final LemmaIndexer lemmaIndexer;
+    private final PageContentCodec contentCodec;
+    private final PageContentStore contentStore;
+
+    private BlockingQueue<PendingPage> queue;
+    private final Map<Integer, LocalDateTime> touchedSites = new ConcurrentHashMap<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private long processed;
+
+    private Thread writerThread;
+    private volatile boolean running;
+    private long lastStatusFlushNanos;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, sitesList.getWriterQueueCapacity()));
+        running = true;
+        writerThread = new Thread(this::writeLoop, "page-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Ставит страницу в очередь на запись. Блокирует вызывающий поток,
+     * если очередь заполнена.
+     */
+    public void submit(Site site, String path, int code, String content, PageText text,
+                       PageValidators validators) throws InterruptedException {
+        if (path.length() > Page.MAX_PATH_LENGTH) {
+            log.warn("Страница {} не сохранена: адрес длиннее {} символов", path, Page.MAX_PATH_LENGTH);
+            return;
+        }
+        submitted.incrementAndGet();
+        queue.put(new PendingPage(site.getId(), path, code, content, text, validators));
+        touchedSites.put(site.getId(), LocalDateTime.now());
+    }
+
+    /**
+     * Ждёт, пока будут записаны все страницы, поставленные в очередь до вызова.
+     */
+    public void flush() throws InterruptedException {
+        long target = submitted.get();
+        synchronized (this) {
+            while (processed < target && writerThread.isAlive()) {
+                wait(100);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingPage> batch = new ArrayList<>();
+        int batchSize = Math.max(1, sitesList.getWriterBatchSize());
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingPage first = queue.poll(sitesList.getStatusTimeInterval(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writePages(batch);
+                    batch.clear();
+                }
+                flushStatusTimes(false);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Ошибка в потоке записи страниц", e);
+            }
+        }
+
+        flushStatusTimes(true);
+    }
+
+    private void writePages(List<PendingPage> batch) {
+        try {
+            Map<PendingPage, ContentRef> refs = storeContents(batch);
+            List<PendingPage> written = batch;
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_PAGE_SQL, batch, batch.size(),
+                        (ps, page) -> setPageParameters(ps, page, refs.get(page)));
+            } catch (DataAccessException e) {
+                log.warn("Пачка из {} страниц не записана ({}), страницы записываются по одной",
+                        batch.size(), e.getMessage());
+                written = writeOneByOne(batch, refs);
+            }
+            submitForIndexing(written);
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить пачку из {} страниц: {}", batch.size(), e.getMessage());
+        } finally {
+            synchronized (this) {
+                processed += batch.size();
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Записывает страницы пачки по одной, чтобы ошибочная строка не потянула
+     * за собой остальные.
+     *
+     * @return записанные страницы
+     */
+    private List<PendingPage> writeOneByOne(List<PendingPage> batch, Map<PendingPage, ContentRef> refs) {
+        List<PendingPage> written = new ArrayList<>(batch.size());
+        for (PendingPage page : batch) {
+            try {
+                jdbcTemplate.update(UPSERT_PAGE_SQL, ps -> setPageParameters(ps, page, refs.get(page)));
+                written.add(page);
+            } catch (DataAccessException e) {
+                log.error("Не удалось сохранить страницу {}: {}", page.getPath(), e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    private void setPageParameters(PreparedStatement ps, PendingPage page, ContentRef ref) throws SQLException {
+        ps.setInt(1, page.getSiteId());
+        ps.setString(2, page.getPath());
+        ps.setInt(3, page.getCode());
+        ps.setString(4, ref != null ? "" : contentCodec.encode(page.getContent()));
+        ps.setString(5, page.getValidators().getEtag());
+        ps.setString(6, page.getValidators().getLastModified());
+        ps.setString(7, page.getValidators().getContentHash());
+        ps.setObject(8, page.getValidators().getSimhash(), Types.BIGINT);
+        ps.setObject(9, ref != null ? ref.getSegment() : null, Types.INTEGER);
+        ps.setObject(10, ref != null ? ref.getOffset() : null, Types.BIGINT);
+        ps.setObject(11, ref != null ? ref.getLength() : null, Types.INTEGER);
+        ps.setString(12, page.getText().getTitle());
+        ps.setString(13, contentCodec.encode(page.getText().getText()));
+    }
+
+    /**
+     * Записывает содержимое пачки в хранилище и сбрасывает его на диск до
+     * записи строк в базу. Если хранилище не справилось, содержимое
+     * сохраняется в колонку {@code page.content}.
+     */
+    private Map<PendingPage, ContentRef> storeContents(List<PendingPage> batch) {
+        Map<PendingPage, ContentRef> refs = new IdentityHashMap<>();
+        try {
+            for (PendingPage page : batch) {
+                ContentRef ref = contentStore.write(page.getContent());
+                if (ref != null) {
+                    refs.put(page, ref);
+                }
+            }
+            if (!refs.isEmpty()) {
+                contentStore.sync();
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось записать содержимое страниц вне базы, оно будет сохранено в базе: {}",
+                    e.getMessage());
+            refs.clear();
+        }
+        return refs;
+    }
+
+    /**
+     * Передаёт успешно загруженные страницы пачки на построение индекса.
+     */
+    private void submitForIndexing(List<PendingPage> batch) {
+        Map<Integer, Map<String, PendingPage>> pagesBySite = new HashMap<>();
+        for (PendingPage page : batch) {
+            if (page.getCode() < 400 && !page.getContent().isEmpty()) {
+                pagesBySite.computeIfAbsent(page.getSiteId(), id -> new HashMap<>()).put(page.getPath(), page);
+            }
+        }
+
+        pagesBySite.forEach((siteId, pages) -> {
+            List<String> paths = new ArrayList<>(pages.keySet());
+            for (int from = 0; from < paths.size(); from += SELECT_CHUNK_SIZE) {
+                List<String> chunk = paths.subList(from, Math.min(paths.size(), from + SELECT_CHUNK_SIZE));
+                String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+
+                List<Object> args = new ArrayList<>(chunk.size() + 1);
+                args.add(siteId);
+                args.addAll(chunk);
+
+                Map<Integer, String> texts = new HashMap<>();
+                jdbcTemplate.query("SELECT id, path FROM page WHERE site_id = ? AND path IN (" + placeholders + ")",
+                        rs -> {
+                            PendingPage page = pages.get(rs.getString(2));
+                            if (page != null) {
+                                texts.put(rs.getInt(1), page.getText().indexedText());
+                            }
+                        },
+                        args.toArray());
+                lemmaIndexer.submitAll(siteId, texts);
+            }
+        });
+    }
+
+    private void flushStatusTimes(boolean force) {
+        long now = System.nanoTime();
+        if (!force && now - lastStatusFlushNanos < TimeUnit.MILLISECONDS.toNanos(sitesList.getStatusTimeInterval())) {
+            return;
+        }
+        lastStatusFlushNanos = now;
+
+        if (touchedSites.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        for (Integer siteId : new ArrayList<>(touchedSites.keySet())) {
+            LocalDateTime time = touchedSites.remove(siteId);
+            if (time != null) {
+                updates.add(new Object[]{Timestamp.valueOf(time), siteId});
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_STATUS_TIME_SQL, updates);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось обновить время статуса сайтов: {}", e.getMessage());
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class PendingPage {
+        private final int siteId;
+        private final String path;
+        private final int code;
+        private final String content;
+        private final PageText text;
+        private final PageValidators validators;
+    }
+}
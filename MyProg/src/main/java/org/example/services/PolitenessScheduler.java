@@ -0,0 +1,325 @@
+package org.example.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Планировщик вежливого обхода. Раздаёт рабочим потокам адреса только тех
+ * хостов, у которых есть свободный токен, поэтому рабочие не простаивают
+ * в {@code Thread.sleep}, а сразу берут адрес другого сайта.
+ * <p>
+ * Среди доступных сайтов выбирается сайт с наименьшим виртуальным временем
+ * (stride scheduling): каждая выдача адреса сдвигает время сайта на величину,
+ * обратную его весу. Поэтому большой сайт не вытесняет маленькие, а сайт,
+ * долго ждавший своего хоста, не получает все потоки разом.
+ */
+public class PolitenessScheduler {
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private final List<CrawlFrontier> frontiers = new ArrayList<>();
+    private final Map<CrawlFrontier, HostTokenBucket> buckets = new HashMap<>();
+    private final Map<String, HostTokenBucket> hostBuckets = new HashMap<>();
+    private final Map<CrawlFrontier, AdaptiveHostLimiter> limiters = new HashMap<>();
+    private final Map<String, AdaptiveHostLimiter> hostLimiters = new HashMap<>();
+    private final Map<CrawlFrontier, Share> shares = new HashMap<>();
+    private final List<CrawlFrontier> candidates = new ArrayList<>();
+    private final Consumer<CrawlFrontier> onFinished;
+
+    /** Виртуальное время последней выдачи адреса. */
+    private double virtualTime;
+    private boolean stopped;
+
+    public PolitenessScheduler(Consumer<CrawlFrontier> onFinished) {
+        this.onFinished = onFinished;
+    }
+
+    public void register(CrawlFrontier frontier, long crawlDelayMillis, int burst) {
+        register(frontier, crawlDelayMillis, burst, null, 1);
+    }
+
+    /**
+     * Регистрирует сайт. Сайты с одинаковым хостом делят одну корзину токенов
+     * и один регулятор скорости.
+     *
+     * @param crawlDelayMillis начальный интервал между запросами к хосту
+     * @param limiter регулятор скорости хоста или {@code null}, если скорость постоянна
+     * @param weight доля сайта в выдаче адресов относительно других сайтов
+     */
+    public void register(CrawlFrontier frontier, long crawlDelayMillis, int burst,
+                         AdaptiveHostLimiter limiter, double weight) {
+        lock.lock();
+        try {
+            String host = hostOf(frontier.getSite().getUrl());
+            HostTokenBucket bucket = hostBuckets.computeIfAbsent(host, h -> new HostTokenBucket(
+                    burst, TimeUnit.MILLISECONDS.toNanos(crawlDelayMillis), System.nanoTime()));
+            buckets.put(frontier, bucket);
+            if (limiter != null) {
+                limiters.put(frontier, hostLimiters.computeIfAbsent(host, h -> limiter));
+            }
+            shares.put(frontier, new Share(weight > 0 ? weight : 1, virtualTime));
+            frontiers.add(frontier);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждёт, пока какой-либо хост станет доступен, и выдаёт его очередной адрес.
+     *
+     * @return аренда адреса или {@code null}, если обход остановлен или завершён
+     */
+    public CrawlLease next() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!stopped && !frontiers.isEmpty()) {
+                long now = System.nanoTime();
+                long waitNanos = MAX_WAIT_NANOS;
+
+                candidates.clear();
+                for (CrawlFrontier frontier : frontiers) {
+                    if (!frontier.hasPending()) {
+                        continue;
+                    }
+
+                    AdaptiveHostLimiter limiter = limiters.get(frontier);
+                    if (limiter != null) {
+                        long untilSlot = limiter.nanosUntilAvailable(now);
+                        if (untilSlot != 0) {
+                            if (untilSlot > 0) {
+                                waitNanos = Math.min(waitNanos, untilSlot);
+                            }
+                            continue;
+                        }
+                    }
+
+                    HostTokenBucket bucket = buckets.get(frontier);
+                    long untilToken = bucket.nanosUntilAvailable(now);
+                    if (untilToken > 0) {
+                        waitNanos = Math.min(waitNanos, untilToken);
+                        continue;
+                    }
+
+                    candidates.add(frontier);
+                }
+
+                candidates.sort(Comparator.comparingDouble(frontier -> shares.get(frontier).startTime(virtualTime)));
+                for (CrawlFrontier frontier : candidates) {
+                    String url = frontier.poll();
+                    if (url != null) {
+                        buckets.get(frontier).tryAcquire(now);
+                        AdaptiveHostLimiter limiter = limiters.get(frontier);
+                        if (limiter != null) {
+                            limiter.onStart();
+                        }
+                        virtualTime = shares.get(frontier).advance(virtualTime);
+                        return new CrawlLease(frontier, url);
+                    }
+                }
+
+                changed.awaitNanos(waitNanos);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждёт токен хоста сайта для запроса вне очереди обхода, например
+     * чтения robots.txt или sitemap, и забирает его.
+     *
+     * @return {@code false}, если обход остановлен или сайт снят с обхода
+     */
+    public boolean awaitToken(CrawlFrontier frontier) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!stopped) {
+                HostTokenBucket bucket = buckets.get(frontier);
+                if (bucket == null) {
+                    return false;
+                }
+                long now = System.nanoTime();
+                if (bucket.tryAcquire(now)) {
+                    return true;
+                }
+                changed.awaitNanos(Math.min(MAX_WAIT_NANOS, bucket.nanosUntilAvailable(now)));
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Отмечает адрес обработанным. Если у сайта больше нет адресов,
+     * сайт снимается с обхода и вызывается обработчик завершения.
+     */
+    public void complete(CrawlLease lease) {
+        complete(lease, FetchOutcome.SKIPPED);
+    }
+
+    /**
+     * Отмечает адрес обработанным и передаёт итог запроса регулятору
+     * скорости хоста.
+     */
+    public void complete(CrawlLease lease, FetchOutcome outcome) {
+        CrawlFrontier frontier = lease.getFrontier();
+        lock.lock();
+        try {
+            AdaptiveHostLimiter limiter = limiters.get(frontier);
+            HostTokenBucket bucket = buckets.get(frontier);
+            if (limiter != null && bucket != null) {
+                long now = System.nanoTime();
+                bucket.setRefillIntervalNanos(limiter.onComplete(outcome, bucket.getRefillIntervalNanos(), now), now);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        frontier.complete(lease.getUrl());
+        checkFinished(frontier);
+    }
+
+    /**
+     * Снимает удержание, поставленное {@link CrawlFrontier#hold()}.
+     */
+    public void release(CrawlFrontier frontier) {
+        frontier.release();
+        checkFinished(frontier);
+    }
+
+    /**
+     * Увеличивает интервал между запросами к хосту сайта, если новый больше
+     * текущего, и не даёт регулятору скорости опускать интервал ниже него.
+     */
+    public void raiseCrawlDelay(CrawlFrontier frontier, long crawlDelayMillis) {
+        lock.lock();
+        try {
+            HostTokenBucket bucket = buckets.get(frontier);
+            long intervalNanos = TimeUnit.MILLISECONDS.toNanos(crawlDelayMillis);
+            if (bucket != null && intervalNanos > bucket.getRefillIntervalNanos()) {
+                bucket.setRefillIntervalNanos(intervalNanos, System.nanoTime());
+            }
+            AdaptiveHostLimiter limiter = limiters.get(frontier);
+            if (limiter != null) {
+                limiter.raiseMinInterval(intervalNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkFinished(CrawlFrontier frontier) {
+        boolean finished = false;
+        lock.lock();
+        try {
+            if (frontier.isExhausted() && frontiers.remove(frontier)) {
+                buckets.remove(frontier);
+                limiters.remove(frontier);
+                shares.remove(frontier);
+                finished = true;
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (finished) {
+            onFinished.accept(frontier);
+        }
+    }
+
+    public void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<CrawlFrontier> getFrontiers() {
+        lock.lock();
+        try {
+            return new ArrayList<>(frontiers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isIdle() {
+        lock.lock();
+        try {
+            return frontiers.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            if (host == null) {
+                return url;
+            }
+            host = host.toLowerCase();
+            return host.startsWith("www.") ? host.substring(4) : host;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Вес сайта и его виртуальное время.
+     */
+    private static class Share {
+        private final double stride;
+        private double pass;
+
+        Share(double weight, double pass) {
+            this.stride = 1.0 / weight;
+            this.pass = pass;
+        }
+
+        /**
+         * Сайт, простаивавший без адресов, начинает с текущего времени,
+         * а не с того, на котором остановился.
+         */
+        double startTime(double virtualTime) {
+            return Math.max(pass, virtualTime);
+        }
+
+        /**
+         * @return время начала выдачи, которое становится текущим временем планировщика
+         */
+        double advance(double virtualTime) {
+            double start = startTime(virtualTime);
+            pass = start + stride;
+            return start;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class CrawlLease {
+        private final CrawlFrontier frontier;
+        private final String url;
+    }
+}
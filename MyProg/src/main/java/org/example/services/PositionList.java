@@ -0,0 +1,140 @@
+package org.example.services;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Вхождения одной леммы в тексте: порядковые номера слов и смещения
+ * символов. Для хранения в строке индекса кодируется компактно:
+ * разности соседних значений записываются числами переменной длины
+ * (по 7 бит на байт), так что частое вхождение занимает 3–4 байта.
+ */
+public final class PositionList {
+
+    private static final int INITIAL_CAPACITY = 12;
+
+    /** Больше этого массив не держится после {@link #clear()}. */
+    private static final int MAX_RETAINED_CAPACITY = 3 * 1024;
+
+    private int[] data;
+    private int size;
+
+    public PositionList() {
+        data = new int[INITIAL_CAPACITY];
+    }
+
+    private PositionList(int[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Добавляет вхождение; вхождения добавляются в порядке текста.
+     *
+     * @param position порядковый номер слова в тексте
+     * @param start    смещение первого символа слова
+     * @param end      смещение за последним символом слова
+     */
+    public void add(int position, int start, int end) {
+        if (size * 3 == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[size * 3] = position;
+        data[size * 3 + 1] = start;
+        data[size * 3 + 2] = end;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Удаляет вхождения, сохраняя массив для повторного заполнения.
+     */
+    public void clear() {
+        if (data.length > MAX_RETAINED_CAPACITY) {
+            data = new int[INITIAL_CAPACITY];
+        }
+        size = 0;
+    }
+
+    /**
+     * @return независимая копия с массивом по размеру содержимого
+     */
+    public PositionList copy() {
+        return new PositionList(Arrays.copyOf(data, Math.max(3, size * 3)), size);
+    }
+
+    public int getPosition(int i) {
+        return data[i * 3];
+    }
+
+    public int getStart(int i) {
+        return data[i * 3 + 1];
+    }
+
+    public int getEnd(int i) {
+        return data[i * 3 + 2];
+    }
+
+    /**
+     * Кодирует вхождения: число вхождений, затем для каждого разность
+     * номеров слов, расстояние от конца предыдущего вхождения и длину слова.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 4 + 2);
+        writeVarInt(out, size);
+        int previousPosition = 0;
+        int previousEnd = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarInt(out, getPosition(i) - previousPosition);
+            writeVarInt(out, getStart(i) - previousEnd);
+            writeVarInt(out, getEnd(i) - getStart(i));
+            previousPosition = getPosition(i);
+            previousEnd = getEnd(i);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException если данные повреждены
+     */
+    public static PositionList decode(byte[] bytes) {
+        int[] offset = {0};
+        int count = readVarInt(bytes, offset);
+        PositionList list = new PositionList();
+        int position = 0;
+        int end = 0;
+        for (int i = 0; i < count; i++) {
+            position += readVarInt(bytes, offset);
+            int start = end + readVarInt(bytes, offset);
+            end = start + readVarInt(bytes, offset);
+            list.add(position, start, end);
+        }
+        return list;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] offset) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (offset[0] >= bytes.length) {
+                throw new IllegalArgumentException("Список вхождений обрезан");
+            }
+            byte b = bytes[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Слишком длинное число в списке вхождений");
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.services;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Правила robots.txt для одного агента: разрешённые и запрещённые пути,
+ * Crawl-delay и перечисленные файлы sitemap. Поддерживаются шаблоны
+ * с {@code *} и {@code $}; при совпадении нескольких правил действует
+ * самое длинное, при равной длине — разрешающее.
+ */
+public class RobotsTxt {
+
+    public static final RobotsTxt ALLOW_ALL = new RobotsTxt(List.of(), null, List.of());
+
+    private final List<Rule> rules;
+    @Getter
+    private final Double crawlDelaySeconds;
+    @Getter
+    private final List<String> sitemaps;
+
+    private RobotsTxt(List<Rule> rules, Double crawlDelaySeconds, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelaySeconds = crawlDelaySeconds;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsTxt parse(String content, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        List<String> sitemaps = new ArrayList<>();
+
+        List<Rule> specificRules = new ArrayList<>();
+        List<Rule> wildcardRules = new ArrayList<>();
+        Double specificDelay = null;
+        Double wildcardDelay = null;
+        boolean specificFound = false;
+
+        boolean groupIsSpecific = false;
+        boolean groupIsWildcard = false;
+        boolean readingAgents = false;
+
+        for (String rawLine : content.split("\r?\n|\r")) {
+            String line = rawLine;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (key) {
+                case "user-agent" -> {
+                    if (!readingAgents) {
+                        groupIsSpecific = false;
+                        groupIsWildcard = false;
+                        readingAgents = true;
+                    }
+                    String groupAgent = value.toLowerCase(Locale.ROOT);
+                    if (groupAgent.equals("*")) {
+                        groupIsWildcard = true;
+                    } else if (!groupAgent.isEmpty() && agent.contains(groupAgent)) {
+                        groupIsSpecific = true;
+                        specificFound = true;
+                    }
+                }
+                case "allow", "disallow" -> {
+                    readingAgents = false;
+                    if (value.isEmpty() && key.equals("disallow")) {
+                        continue;
+                    }
+                    Rule rule = new Rule(value, key.equals("allow"));
+                    if (groupIsSpecific) {
+                        specificRules.add(rule);
+                    }
+                    if (groupIsWildcard) {
+                        wildcardRules.add(rule);
+                    }
+                }
+                case "crawl-delay" -> {
+                    readingAgents = false;
+                    Double delay = parseDelay(value);
+                    if (groupIsSpecific && delay != null) {
+                        specificDelay = delay;
+                    }
+                    if (groupIsWildcard && delay != null) {
+                        wildcardDelay = delay;
+                    }
+                }
+                case "sitemap" -> {
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                }
+                default -> readingAgents = false;
+            }
+        }
+
+        return specificFound
+                ? new RobotsTxt(specificRules, specificDelay, sitemaps)
+                : new RobotsTxt(wildcardRules, wildcardDelay, sitemaps);
+    }
+
+    public boolean isAllowed(String url) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+
+        String path;
+        try {
+            URI uri = URI.create(url);
+            path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path = path + "?" + uri.getRawQuery();
+            }
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null
+                    || rule.pattern.length() > best.pattern.length()
+                    || rule.pattern.length() == best.pattern.length() && rule.allow)) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    private static Double parseDelay(String value) {
+        try {
+            double delay = Double.parseDouble(value);
+            return delay >= 0 ? delay : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static class Rule {
+        private final String pattern;
+        private final boolean allow;
+        /**
+         * Шаблон, который должен совпасть с путём целиком: без {@code $}
+         * в конце дописывается {@code *}, так как правило задаёт префикс.
+         */
+        private final String glob;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.glob = pattern.endsWith("$") ? pattern.substring(0, pattern.length() - 1) : pattern + "*";
+        }
+
+        /**
+         * Сопоставление с {@code *} двумя указателями: при несовпадении
+         * возвращаемся только к последней звёздочке, поэтому время линейно
+         * по длине пути на каждую звёздочку, а не экспоненциально.
+         */
+        boolean matches(String path) {
+            int p = 0;
+            int i = 0;
+            int star = -1;
+            int resume = 0;
+            while (i < path.length()) {
+                if (p < glob.length() && glob.charAt(p) == '*') {
+                    star = p++;
+                    resume = i;
+                } else if (p < glob.length() && glob.charAt(p) == path.charAt(i)) {
+                    p++;
+                    i++;
+                } else if (star >= 0) {
+                    p = star + 1;
+                    i = ++resume;
+                } else {
+                    return false;
+                }
+            }
+            while (p < glob.length() && glob.charAt(p) == '*') {
+                p++;
+            }
+            return p == glob.length();
+        }
+    }
+}
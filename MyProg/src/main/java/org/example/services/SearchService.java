@@ -1,12 +1,14 @@
 package org.example.services;
 
 import lombok.RequiredArgsConstructor;
+import org.example.config.SitesList;
 import org.example.dto.statistics.SearchResponse;
 import org.example.dto.statistics.SearchResult;
 import org.example.model.*;
 import org.example.repositories.*;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -19,8 +21,11 @@ public class SearchService {
     private final IndexRepository indexRepository;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
+    private final PageContentStore contentStore;
+    private final SitesList sitesList;
 
     private static final double TOO_FREQUENT_THRESHOLD = 0.8;
+    private static final int SNIPPET_RADIUS = 150;
 
     public SearchResponse search(String query, String siteUrl, int offset, int limit) {
         SearchResponse response = new SearchResponse();
@@ -133,9 +138,12 @@ public class SearchService {
         List<SearchResult> results = new ArrayList<>();
         double maxAbsRelevance = 0;
         Map<Page, Double> pageRelevance = new HashMap<>();
+        Map<Page, List<Index>> pageIndices = new HashMap<>();
 
         for (Page page : foundPages) {
-            double absRelevance = calculateAbsoluteRelevance(page, dbLemmas.values());
+            List<Index> indices = findPageIndices(page, dbLemmas.values());
+            pageIndices.put(page, indices);
+            double absRelevance = calculateAbsoluteRelevance(indices);
             pageRelevance.put(page, absRelevance);
             maxAbsRelevance = Math.max(maxAbsRelevance, absRelevance);
         }
@@ -145,11 +153,12 @@ public class SearchService {
             double absRelevance = entry.getValue();
             double relativeRelevance = maxAbsRelevance > 0 ? absRelevance / maxAbsRelevance : 0;
 
+            PageText text = textOf(page);
             SearchResult result = new SearchResult();
             result.setUri(page.getPath());
-            result.setTitle(extractTitle(page.getContent()));
-            result.setSnippet(generateSnippet(page.getContent(),
-                    new ArrayList<>(queryLemmas.keySet())));
+            result.setTitle(extractTitle(text.getTitle()));
+            result.setSnippet(generateSnippet(text.getText(),
+                    new ArrayList<>(queryLemmas.keySet()), matchesOf(page, text, pageIndices.get(page))));
             result.setRelevance(relativeRelevance);
             result.setSite(page.getSite().getUrl());
             result.setSiteName(page.getSite().getName());
@@ -161,58 +170,99 @@ public class SearchService {
     }
 
 
-    private double calculateAbsoluteRelevance(Page page, Collection<Lemma> lemmas) {
-        double totalRank = 0;
+    private List<Index> findPageIndices(Page page, Collection<Lemma> lemmas) {
+        List<Index> indices = new ArrayList<>();
 
         for (Lemma lemma : lemmas) {
-            Optional<Index> indexOpt = indexRepository.findByPageAndLemma(page, lemma);
-            if (indexOpt.isPresent()) {
-                totalRank += indexOpt.get().getRank();
-            }
+            indexRepository.findByPageAndLemma(page, lemma).ifPresent(indices::add);
+        }
+
+        return indices;
+    }
+
+    private double calculateAbsoluteRelevance(List<Index> indices) {
+        double totalRank = 0;
+
+        for (Index index : indices) {
+            totalRank += index.getRank();
         }
 
         return totalRank;
     }
 
-    private String extractTitle(String html) {
-        if (html == null || html.isEmpty()) {
-            return "";
+    /**
+     * Вхождения лемм запроса в тексте страницы по данным индекса,
+     * отсортированные по смещению: {начало, конец}. Смещения в индексе
+     * отсчитываются от заголовка ({@link PageText#indexedText()}), вхождения
+     * в заголовке в сниппет не попадают. Пусто, если вхождения не хранятся
+     * или текст страницы извлечён заново и смещения к нему не относятся.
+     */
+    private List<int[]> matchesOf(Page page, PageText text, List<Index> indices) {
+        if (!sitesList.isStoreLemmaPositions() || page.getText() == null) {
+            return Collections.emptyList();
         }
 
-        try {
-            int titleStart = html.indexOf("<title");
-            if (titleStart != -1) {
-                titleStart = html.indexOf(">", titleStart) + 1;
-                int titleEnd = html.indexOf("</title>", titleStart);
-                if (titleEnd > titleStart) {
-                    String title = html.substring(titleStart, titleEnd).trim();
-                    return title.length() > 100 ? title.substring(0, 100) + "..." : title;
-                }
+        int offset = text.textOffset();
+        List<int[]> matches = new ArrayList<>();
+        for (Index index : indices) {
+            if (index.getPositions() == null) {
+                continue;
             }
-
-            int h1Start = html.indexOf("<h1");
-            if (h1Start != -1) {
-                h1Start = html.indexOf(">", h1Start) + 1;
-                int h1End = html.indexOf("</h1>", h1Start);
-                if (h1End > h1Start) {
-                    String h1 = html.substring(h1Start, h1End).trim();
-                    return h1.length() > 100 ? h1.substring(0, 100) + "..." : h1;
+            PositionList positions;
+            try {
+                positions = PositionList.decode(index.getPositions());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            for (int i = 0; i < positions.size(); i++) {
+                int start = positions.getStart(i) - offset;
+                int end = positions.getEnd(i) - offset;
+                if (start < 0) {
+                    continue;
+                }
+                if (end > text.getText().length()) {
+                    return Collections.emptyList();
                 }
+                matches.add(new int[]{start, end});
             }
-
-        } catch (Exception e) {
         }
 
-        return "Без заголовка";
+        matches.sort(Comparator.comparingInt(match -> match[0]));
+        return matches;
+    }
+
+    /**
+     * Заголовок и текст, сохранённые при обходе. У страниц, сохранённых
+     * до появления этих полей, они извлекаются из содержимого; нечитаемая
+     * страница остаётся в выдаче без заголовка и сниппета.
+     */
+    private PageText textOf(Page page) {
+        if (page.getText() != null) {
+            return new PageText(page.getTitle() != null ? page.getTitle() : "", page.getText());
+        }
+        try {
+            return PageText.of(HtmlPageScanner.scan(contentStore.load(page), page.getPath()));
+        } catch (IOException e) {
+            return PageText.EMPTY;
+        }
     }
 
-    private String generateSnippet(String html, List<String> searchWords) {
-        String cleanText = lemmaService.cleanHtml(html);
+    private String extractTitle(String title) {
+        if (title == null || title.isEmpty()) {
+            return "Без заголовка";
+        }
+        return title.length() > 100 ? title.substring(0, 100) + "..." : title;
+    }
 
+    private String generateSnippet(String cleanText, List<String> searchWords, List<int[]> matches) {
         if (cleanText.isEmpty()) {
             return "";
         }
 
+        if (!matches.isEmpty()) {
+            return snippetAroundMatches(cleanText, matches);
+        }
+
         List<Integer> positions = new ArrayList<>();
         String lowerText = cleanText.toLowerCase();
 
@@ -243,7 +293,59 @@ public class SearchService {
         return snippet;
     }
 
+    /**
+     * Сниппет вокруг места, где вхождений лемм запроса больше всего;
+     * вхождения выделяются по смещениям, так что находятся и другие формы слов.
+     */
+    private String snippetAroundMatches(String text, List<int[]> matches) {
+        int best = 0;
+        int bestLast = 0;
+        int last = 0;
+        for (int first = 0; first < matches.size(); first++) {
+            last = Math.max(last, first);
+            while (last + 1 < matches.size() && matches.get(last + 1)[1] - matches.get(first)[0] <= SNIPPET_RADIUS * 2) {
+                last++;
+            }
+            if (last - first > bestLast - best) {
+                best = first;
+                bestLast = last;
+            }
+        }
+
+        int[] bounds = excerptBounds(text, (matches.get(best)[0] + matches.get(bestLast)[1]) / 2, SNIPPET_RADIUS);
+        StringBuilder snippet = new StringBuilder();
+        if (bounds[0] > 0) snippet.append("...");
+
+        int cursor = bounds[0];
+        for (int[] match : matches) {
+            if (match[0] >= cursor && match[1] <= bounds[1]) {
+                snippet.append(text, cursor, match[0])
+                        .append("<b>").append(text, match[0], match[1]).append("</b>");
+                cursor = match[1];
+            }
+        }
+        snippet.append(text, cursor, bounds[1]);
+
+        if (bounds[1] < text.length()) snippet.append("...");
+        return snippet.toString();
+    }
+
     private String getTextExcerpt(String text, int centerPos, int radius) {
+        int[] bounds = excerptBounds(text, centerPos, radius);
+        int start = bounds[0];
+        int end = bounds[1];
+
+        String excerpt = text.substring(start, end);
+        if (start > 0) excerpt = "..." + excerpt;
+        if (end < text.length()) excerpt = excerpt + "...";
+
+        return excerpt;
+    }
+
+    /**
+     * Границы отрывка текста вокруг позиции, расширенные до границ слов.
+     */
+    private int[] excerptBounds(String text, int centerPos, int radius) {
         int start = Math.max(0, centerPos - radius);
         int end = Math.min(text.length(), centerPos + radius);
 
@@ -254,11 +356,7 @@ public class SearchService {
             end++;
         }
 
-        String excerpt = text.substring(start, end);
-        if (start > 0) excerpt = "..." + excerpt;
-        if (end < text.length()) excerpt = excerpt + "...";
-
-        return excerpt;
+        return new int[]{start, end};
     }
 
     private String highlightWords(String text, List<String> words) {
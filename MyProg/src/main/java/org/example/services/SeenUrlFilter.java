@@ -0,0 +1,27 @@
+package org.example.services;
+
+/**
+ * Множество адресов, уже встреченных при обходе сайта.
+ * Реализации должны быть потокобезопасны.
+ */
+public interface SeenUrlFilter {
+
+    /**
+     * Отмечает адрес встреченным.
+     *
+     * @return {@code true}, если адрес точно не встречался раньше; {@code false},
+     * если встречался или, для неточного фильтра, мог встречаться
+     */
+    boolean add(String url);
+
+    /**
+     * @return {@code true}, если адрес встречался или, для неточного
+     * фильтра, мог встречаться
+     */
+    boolean contains(String url);
+
+    /**
+     * @return {@code true}, если {@link #add} никогда не ошибается
+     */
+    boolean isExact();
+}
@@ -0,0 +1,201 @@
+package org.example.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.SitesList;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище содержимого страниц в файлах сегментов. Содержимое
+ * дописывается в конец текущего сегмента в UTF-8; когда сегмент
+ * достигает {@code content-segment-size}, начинается следующий.
+ * Заполненный сегмент больше не меняется и отображается в память целиком
+ * один раз; из текущего сегмента читается только нужный участок.
+ * <p>
+ * Сегменты только дописываются: при перезаписи страницы старое содержимое
+ * остаётся в файле и больше не используется.
+ */
+@Component
+@ConditionalOnProperty(prefix = "indexing-settings", name = "content-store", havingValue = "SEGMENT_FILES")
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentFileContentStore implements PageContentStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+
+    private final SitesList sitesList;
+
+    /** Заполненные сегменты, отображённые в память. */
+    private final Map<Integer, MappedByteBuffer> mappedSegments = new ConcurrentHashMap<>();
+    /** Каналы чтения сегментов, которые ещё дописывались; закрываются при отображении сегмента. */
+    private final Map<Integer, FileChannel> readChannels = new ConcurrentHashMap<>();
+
+    private Path directory;
+    private FileChannel activeChannel;
+    private volatile int activeSegment;
+    private long activeSize;
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = Paths.get(sitesList.getContentStoreDir());
+        Files.createDirectories(directory);
+
+        int last = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    last = Math.max(last, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        openSegment(Math.max(1, last));
+        log.info("Содержимое страниц хранится в {}, текущий сегмент {}", directory.toAbsolutePath(), activeSegment);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.force(false);
+            activeChannel.close();
+        }
+        for (FileChannel channel : readChannels.values()) {
+            channel.close();
+        }
+        readChannels.clear();
+    }
+
+    @Override
+    public ContentRef write(String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            if (activeSize > 0 && activeSize + bytes.length > segmentSize()) {
+                activeChannel.force(false);
+                activeChannel.close();
+                openSegment(activeSegment + 1);
+            }
+
+            long offset = activeSize;
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                activeChannel.write(buffer, activeSize + buffer.position());
+            }
+            activeSize += bytes.length;
+            return new ContentRef(activeSegment, offset, bytes.length);
+        }
+    }
+
+    @Override
+    public String read(ContentRef ref) throws IOException {
+        if (ref.getSegment() >= activeSegment) {
+            try {
+                return readSlice(ref);
+            } catch (ClosedChannelException e) {
+                // Сегмент заполнился и был отображён в память во время чтения.
+                if (ref.getSegment() >= activeSegment) {
+                    throw e;
+                }
+            }
+        }
+        MappedByteBuffer mapped = mapSealed(ref.getSegment());
+        if (mapped.capacity() < ref.getOffset() + ref.getLength()) {
+            throw new IOException("Сегмент " + ref.getSegment() + " короче ожидаемого: "
+                    + mapped.capacity() + " < " + (ref.getOffset() + ref.getLength()));
+        }
+        return StandardCharsets.UTF_8.decode(mapped.slice((int) ref.getOffset(), ref.getLength())).toString();
+    }
+
+    @Override
+    public synchronized void sync() throws IOException {
+        activeChannel.force(false);
+    }
+
+    /**
+     * Читает участок сегмента, который ещё дописывается: отображать его
+     * целиком пришлось бы заново после каждой записи.
+     */
+    private String readSlice(ContentRef ref) throws IOException {
+        FileChannel channel;
+        try {
+            channel = readChannels.computeIfAbsent(ref.getSegment(), id -> {
+                try {
+                    return FileChannel.open(segmentPath(id), StandardOpenOption.READ);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(ref.getLength());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, ref.getOffset() + buffer.position()) < 0) {
+                throw new IOException("Сегмент " + ref.getSegment() + " короче ожидаемого: нет "
+                        + (ref.getOffset() + ref.getLength()) + " байт");
+            }
+        }
+        buffer.flip();
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    /**
+     * Отображает заполненный сегмент в память целиком. Сегмент больше не
+     * растёт, поэтому отображение делается один раз, а канал, через который
+     * сегмент читался, пока дописывался, закрывается.
+     */
+    private MappedByteBuffer mapSealed(int segment) throws IOException {
+        try {
+            return mappedSegments.computeIfAbsent(segment, id -> {
+                try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    FileChannel reader = readChannels.remove(id);
+                    if (reader != null) {
+                        reader.close();
+                    }
+                    return mapped;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void openSegment(int segment) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeSegment = segment;
+        activeSize = activeChannel.size();
+    }
+
+    private long segmentSize() {
+        // Отображение одного буфера ограничено 2 ГБ.
+        return Math.max(1, Math.min(sitesList.getContentSegmentSize(), Integer.MAX_VALUE));
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%06d.dat", segment));
+    }
+}
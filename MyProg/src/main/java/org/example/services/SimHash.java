@@ -0,0 +1,82 @@
+package org.example.services;
+
+/**
+ * SimHash текста: 64-битный отпечаток, у которого почти одинаковые тексты
+ * отличаются в немногих битах. Признаками служат тройки соседних слов.
+ */
+public final class SimHash {
+
+    private static final int SHINGLE_SIZE = 3;
+
+    private SimHash() {
+    }
+
+    /**
+     * @param minWords сколько слов должно быть в тексте, чтобы отпечаток имел смысл
+     * @return отпечаток или {@code null}, если слов меньше {@code minWords}
+     */
+    public static Long fingerprint(String text, int minWords) {
+        int[] weights = new int[Long.SIZE];
+        long[] window = new long[SHINGLE_SIZE];
+        int words = 0;
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+
+            long wordHash = 0xCBF29CE484222325L;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                wordHash ^= Character.toLowerCase(text.charAt(i));
+                wordHash *= 0x100000001B3L;
+                i++;
+            }
+
+            window[words % SHINGLE_SIZE] = wordHash;
+            words++;
+            if (words >= SHINGLE_SIZE) {
+                long shingle = 0;
+                for (int k = 0; k < SHINGLE_SIZE; k++) {
+                    shingle = shingle * 31 + window[(words + k) % SHINGLE_SIZE];
+                }
+                addFeature(weights, mix(shingle));
+            }
+        }
+
+        if (words < Math.max(SHINGLE_SIZE, minWords)) {
+            return null;
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static void addFeature(int[] weights, long hash) {
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            weights[bit] += (hash >>> bit & 1) != 0 ? 1 : -1;
+        }
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,265 @@
+package org.example.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.SitesList;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Заполнение границы обхода до начала обхода по ссылкам: читает robots.txt
+ * и все перечисленные в нём файлы sitemap (включая индексы sitemap) и ставит
+ * в очередь каждый указанный адрес. Страницы, которые по {@code lastmod}
+ * не менялись с прошлого обхода, только отмечаются встреченными.
+ * Запросы к сайту, как и загрузка страниц, ждут токена хоста
+ * в планировщике обхода.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SiteSeeder {
+
+    private static final String USER_AGENT = "HeliontSearchBot";
+
+    private final SitesList sitesList;
+    private final PageCrawler pageCrawler;
+    private final UrlCanonicalizer urlCanonicalizer;
+
+    private final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+    /**
+     * Читает robots.txt сайта и применяет его правила к границе обхода.
+     *
+     * @return правила robots.txt или {@link RobotsTxt#ALLOW_ALL}, если файла нет
+     */
+    public RobotsTxt loadRobots(CrawlFrontier frontier, PolitenessScheduler scheduler) {
+        if (!sitesList.isRespectRobots() || !awaitTurn(scheduler, frontier)) {
+            return RobotsTxt.ALLOW_ALL;
+        }
+
+        String robotsUrl = rootOf(frontier.getSite().getUrl()) + "/robots.txt";
+        try {
+            Connection.Response response = Jsoup.connect(robotsUrl)
+                    .userAgent(USER_AGENT)
+                    .timeout(10000)
+                    .ignoreContentType(true)
+                    .ignoreHttpErrors(true)
+                    .execute();
+            if (response.statusCode() >= 400) {
+                return RobotsTxt.ALLOW_ALL;
+            }
+
+            RobotsTxt robots = RobotsTxt.parse(response.body(), USER_AGENT);
+            frontier.setRobots(robots);
+            return robots;
+
+        } catch (IOException e) {
+            log.debug("Не удалось загрузить {}: {}", robotsUrl, e.getMessage());
+            return RobotsTxt.ALLOW_ALL;
+        }
+    }
+
+    /**
+     * Ставит в очередь адреса из всех sitemap сайта.
+     *
+     * @param active пока возвращает {@code true}, чтение продолжается
+     * @return сколько адресов поставлено в очередь
+     */
+    public int seedFromSitemaps(CrawlFrontier frontier, RobotsTxt robots, PolitenessScheduler scheduler,
+                                BooleanSupplier active) {
+        if (!sitesList.isUseSitemaps()) {
+            return 0;
+        }
+
+        String siteUrl = frontier.getSite().getUrl();
+        Deque<String> sitemaps = new ArrayDeque<>(robots.getSitemaps());
+        if (sitemaps.isEmpty()) {
+            sitemaps.add(rootOf(siteUrl) + "/sitemap.xml");
+        }
+
+        Set<String> visited = new HashSet<>();
+        int[] counters = new int[2];
+
+        while (!sitemaps.isEmpty() && visited.size() < sitesList.getMaxSitemaps() && active.getAsBoolean()) {
+            String sitemapUrl = sitemaps.poll();
+            if (!visited.add(sitemapUrl)) {
+                continue;
+            }
+            if (!awaitTurn(scheduler, frontier)) {
+                break;
+            }
+
+            try {
+                readSitemap(sitemapUrl, frontier, sitemaps, counters, active);
+            } catch (IOException | XMLStreamException e) {
+                log.debug("Не удалось прочитать sitemap {}: {}", sitemapUrl, e.getMessage());
+            }
+        }
+
+        log.info("Sitemap сайта {}: поставлено в очередь {}, пропущено неизменившихся {}",
+                siteUrl, counters[0], counters[1]);
+        return counters[0];
+    }
+
+    private void readSitemap(String sitemapUrl, CrawlFrontier frontier, Deque<String> sitemaps,
+                             int[] counters, BooleanSupplier active) throws IOException, XMLStreamException {
+        Connection.Response response = Jsoup.connect(sitemapUrl)
+                .userAgent(USER_AGENT)
+                .timeout(30000)
+                .maxBodySize(0)
+                .ignoreContentType(true)
+                .execute();
+
+        try (InputStream body = openBody(response.bodyStream())) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(body);
+            try {
+                boolean inIndex = false;
+                String loc = null;
+                String lastmod = null;
+                StringBuilder text = new StringBuilder();
+
+                while (reader.hasNext() && active.getAsBoolean()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (name.equals("sitemapindex")) {
+                            inIndex = true;
+                        } else if (name.equals("url") || name.equals("sitemap")) {
+                            loc = null;
+                            lastmod = null;
+                        }
+                        text.setLength(0);
+                    } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                        text.append(reader.getText());
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        switch (name) {
+                            case "loc" -> loc = text.toString().trim();
+                            case "lastmod" -> lastmod = text.toString().trim();
+                            case "sitemap" -> {
+                                if (inIndex && loc != null && isSameHost(loc, frontier.getSite().getUrl())) {
+                                    sitemaps.add(loc);
+                                }
+                            }
+                            case "url" -> {
+                                if (loc != null) {
+                                    seedUrl(frontier, loc, lastmod, counters);
+                                }
+                            }
+                            default -> {
+                            }
+                        }
+                        text.setLength(0);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private void seedUrl(CrawlFrontier frontier, String loc, String lastmod, int[] counters) {
+        String siteUrl = frontier.getSite().getUrl();
+        String url = urlCanonicalizer.canonicalize(loc, siteUrl);
+        if (!pageCrawler.isCrawlable(url, siteUrl)) {
+            return;
+        }
+
+        Instant previousCrawl = frontier.getPreviousCrawlTime();
+        Instant modified = parseLastmod(lastmod);
+        if (previousCrawl != null && modified != null && modified.isBefore(previousCrawl)
+                && frontier.getKnownPage(url) != null) {
+            if (frontier.skipKnownPage(url)) {
+                counters[1]++;
+            }
+            return;
+        }
+
+        if (frontier.offer(url)) {
+            counters[0]++;
+        }
+    }
+
+    /**
+     * Индекс sitemap может ссылаться только на файлы своего сайта:
+     * иначе чужой файл мог бы заставить обходчик ходить по другим хостам.
+     */
+    private static boolean isSameHost(String url, String siteUrl) {
+        try {
+            URI uri = URI.create(url);
+            return uri.getHost() != null
+                    && PolitenessScheduler.hostOf(url).equals(PolitenessScheduler.hostOf(siteUrl));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean awaitTurn(PolitenessScheduler scheduler, CrawlFrontier frontier) {
+        try {
+            return scheduler.awaitToken(frontier);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static InputStream openBody(InputStream stream) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(stream);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(buffered);
+        }
+        return buffered;
+    }
+
+    static Instant parseLastmod(String lastmod) {
+        if (lastmod == null || lastmod.isEmpty()) {
+            return null;
+        }
+        try {
+            if (lastmod.length() == 10) {
+                return LocalDate.parse(lastmod).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(lastmod).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String rootOf(String siteUrl) {
+        URI uri = URI.create(siteUrl);
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
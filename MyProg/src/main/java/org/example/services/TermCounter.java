@@ -0,0 +1,234 @@
+package org.example.services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Счётчик «строка → число» на открытой адресации с линейным пробированием.
+ * Ключи и счётчики лежат в двух массивах, поэтому увеличение счётчика
+ * не создаёт объектов. После {@link #clear()} массивы используются
+ * повторно, так что один экземпляр может считать леммы страницы за
+ * страницей. Рядом со счётчиком слот может хранить вхождения строки
+ * ({@link #addOccurrence}); списки вхождений тоже переиспользуются после
+ * очистки. Не потокобезопасен.
+ */
+public final class TermCounter {
+
+    @FunctionalInterface
+    public interface TermConsumer {
+        void accept(String term, int count);
+    }
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /** Больше этого массивы не держатся после {@link #clear()}, чтобы одна большая страница не занимала память. */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    private String[] keys;
+    private int[] counts;
+    /** Вхождения по слотам; создаётся при первом {@link #addOccurrence}. */
+    private PositionList[] positions;
+    private int size;
+    private int resizeAt;
+
+    public TermCounter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    private TermCounter(int capacity) {
+        allocate(capacity);
+    }
+
+    /**
+     * Увеличивает счётчик строки на единицу.
+     */
+    public void add(String term) {
+        add(term, 1);
+    }
+
+    public void add(String term, int count) {
+        // Слот ищется до обращения к counts: добавление может заменить массив.
+        int slot = slotOf(term);
+        counts[slot] += count;
+    }
+
+    /**
+     * Увеличивает счётчик строки на единицу и запоминает вхождение,
+     * так что счётчик всегда равен числу вхождений строки.
+     */
+    public void addOccurrence(String term, int position, int start, int end) {
+        int slot = slotOf(term);
+        counts[slot]++;
+        if (positions == null) {
+            positions = new PositionList[keys.length];
+        }
+        PositionList list = positions[slot];
+        if (list == null) {
+            list = new PositionList();
+            positions[slot] = list;
+        }
+        list.add(position, start, end);
+    }
+
+    /**
+     * @return вхождения строки или {@code null}, если они не запоминались
+     */
+    public PositionList getPositions(String term) {
+        if (positions == null) {
+            return null;
+        }
+        int slot = find(term);
+        return slot >= 0 && positions[slot] != null && positions[slot].size() > 0 ? positions[slot] : null;
+    }
+
+    /**
+     * @return счётчик строки или 0, если её нет
+     */
+    public int get(String term) {
+        int slot = find(term);
+        return slot >= 0 ? counts[slot] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(TermConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        if (keys.length > MAX_RETAINED_CAPACITY) {
+            allocate(DEFAULT_CAPACITY);
+        } else if (size > 0) {
+            Arrays.fill(keys, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * @return независимая копия с массивами по размеру содержимого,
+     * которую можно передать другому потоку
+     */
+    public TermCounter copy() {
+        TermCounter copy = new TermCounter(capacityFor(size));
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                int slot = copy.slotOf(keys[i]);
+                copy.counts[slot] = counts[i];
+                if (positions != null && positions[i] != null && positions[i].size() > 0) {
+                    if (copy.positions == null) {
+                        copy.positions = new PositionList[copy.keys.length];
+                    }
+                    copy.positions[slot] = positions[i].copy();
+                }
+            }
+        }
+        return copy;
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>(size * 4 / 3 + 1);
+        forEach(map::put);
+        return map;
+    }
+
+    /**
+     * @return слот строки; отсутствующая строка добавляется с нулевым счётчиком
+     */
+    private int slotOf(String term) {
+        int mask = keys.length - 1;
+        int slot = hash(term) & mask;
+        while (true) {
+            String key = keys[slot];
+            if (key == null) {
+                keys[slot] = term;
+                counts[slot] = 0;
+                if (positions != null && positions[slot] != null) {
+                    positions[slot].clear();
+                }
+                if (++size > resizeAt) {
+                    rehash(keys.length * 2);
+                    return find(term);
+                }
+                return slot;
+            }
+            if (key.equals(term)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @return слот строки или -1, если её нет
+     */
+    private int find(String term) {
+        int mask = keys.length - 1;
+        int slot = hash(term) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (key.equals(term)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        PositionList[] oldPositions = positions;
+        allocate(capacity);
+        if (oldPositions != null) {
+            positions = new PositionList[capacity];
+        }
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            String key = oldKeys[i];
+            if (key != null) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                counts[slot] = oldCounts[i];
+                if (oldPositions != null) {
+                    positions[slot] = oldPositions[i];
+                }
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        counts = new int[capacity];
+        positions = null;
+        resizeAt = capacity / 2;
+        size = 0;
+    }
+
+    /**
+     * Наименьшая степень двойки, при которой {@code size} элементов
+     * занимают не больше половины массива.
+     */
+    private static int capacityFor(int size) {
+        return Math.max(4, Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1);
+    }
+
+    private static int hash(String term) {
+        int h = term.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.services;
+
+import lombok.RequiredArgsConstructor;
+import org.example.config.Site;
+import org.example.config.SitesList;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Приведение адресов страниц к каноническому виду, чтобы один и тот же
+ * документ не загружался и не хранился под разными адресами.
+ * <ul>
+ *     <li>схема и хост адреса сайта заменяются на указанные в настройках,
+ *     так что {@code http}/{@code https} и {@code www} не различаются;</li>
+ *     <li>порт по умолчанию, фрагмент, сегменты {@code .} и {@code ..},
+ *     повторные {@code /}, {@code index.html} и завершающий {@code /} убираются;</li>
+ *     <li>из запроса остаются только значимые для сайта параметры,
+ *     отсортированные по имени; параметры отслеживания убираются всегда.</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class UrlCanonicalizer {
+
+    /** Значение в списке значимых параметров, оставляющее все параметры, кроме отслеживания. */
+    public static final String ALL_PARAMS = "*";
+
+    private static final Set<String> TRACKING_PARAMS = Set.of(
+            "fbclid", "gclid", "yclid", "dclid", "msclkid", "_openstat", "_ga", "_gl",
+            "mc_cid", "mc_eid", "sessionid", "phpsessid", "jsessionid", "sid"
+    );
+
+    private static final List<String> INDEX_FILES = List.of(
+            "index.html", "index.htm", "index.php", "default.aspx", "default.htm"
+    );
+
+    private final SitesList sitesList;
+
+    private final Map<String, SiteRules> rules = new ConcurrentHashMap<>();
+
+    /**
+     * Приводит адрес к каноническому виду по правилам сайта.
+     *
+     * @param siteUrl адрес сайта из настроек
+     * @return канонический адрес или {@code null}, если адрес не http(s) или не разбирается
+     */
+    public String canonicalize(String url, String siteUrl) {
+        if (url == null) {
+            return null;
+        }
+
+        URI uri;
+        try {
+            uri = new URI(url.trim().replace(" ", "%20"));
+        } catch (URISyntaxException e) {
+            return null;
+        }
+
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost() == null ? null : stripDot(uri.getHost().toLowerCase(Locale.ROOT));
+        if (host == null || !"http".equals(scheme) && !"https".equals(scheme)) {
+            return null;
+        }
+
+        int port = uri.getPort();
+        SiteRules site = rulesFor(siteUrl);
+        if (site != null && site.hostKey.equals(hostKey(host))) {
+            scheme = site.scheme;
+            host = site.host;
+            port = site.port;
+        }
+        if (port == 80 && scheme.equals("http") || port == 443 && scheme.equals("https")) {
+            port = -1;
+        }
+
+        StringBuilder result = new StringBuilder(url.length());
+        result.append(scheme).append("://").append(host);
+        if (port != -1) {
+            result.append(':').append(port);
+        }
+        result.append(canonicalPath(uri.getRawPath()));
+
+        String query = canonicalQuery(uri.getRawQuery(), site != null ? site.significantParams : defaultParams());
+        if (!query.isEmpty()) {
+            result.append('?').append(query);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return {@code true}, если адрес относится к хосту сайта; {@code www} не учитывается
+     */
+    public boolean belongsToSite(String url, String siteUrl) {
+        if (url == null || url.isEmpty()) {
+            return false;
+        }
+        SiteRules site = rulesFor(siteUrl);
+        if (site == null) {
+            return false;
+        }
+        try {
+            String host = new URI(url.trim().replace(" ", "%20")).getHost();
+            return host != null && site.hostKey.equals(hostKey(stripDot(host.toLowerCase(Locale.ROOT))));
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private SiteRules rulesFor(String siteUrl) {
+        if (siteUrl == null) {
+            return null;
+        }
+        SiteRules site = rules.get(siteUrl);
+        if (site == null) {
+            site = SiteRules.of(siteUrl, significantParamsFor(siteUrl));
+            if (site != null) {
+                rules.put(siteUrl, site);
+            }
+        }
+        return site;
+    }
+
+    private Set<String> significantParamsFor(String siteUrl) {
+        List<Site> sites = sitesList.getSites() != null ? sitesList.getSites() : List.of();
+        for (Site site : sites) {
+            if (siteUrl.equals(site.getUrl()) && site.getSignificantParams() != null) {
+                return toLowerCaseSet(site.getSignificantParams());
+            }
+        }
+        return defaultParams();
+    }
+
+    private Set<String> defaultParams() {
+        return toLowerCaseSet(sitesList.getSignificantParams());
+    }
+
+    private static String canonicalPath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+
+        List<String> segments = new ArrayList<>();
+        for (String segment : rawPath.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+                continue;
+            }
+            segments.add(normalizeEscapes(segment));
+        }
+
+        if (!segments.isEmpty() && INDEX_FILES.contains(segments.get(segments.size() - 1).toLowerCase(Locale.ROOT))) {
+            segments.remove(segments.size() - 1);
+        }
+
+        return "/" + String.join("/", segments);
+    }
+
+    private static String canonicalQuery(String rawQuery, Set<String> significant) {
+        if (rawQuery == null || rawQuery.isEmpty() || significant.isEmpty()) {
+            return "";
+        }
+
+        boolean keepAll = significant.contains(ALL_PARAMS);
+        List<String> kept = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int eq = param.indexOf('=');
+            String name = (eq >= 0 ? param.substring(0, eq) : param).toLowerCase(Locale.ROOT);
+            if (name.startsWith("utm_") || TRACKING_PARAMS.contains(name)) {
+                continue;
+            }
+            if (keepAll || significant.contains(name)) {
+                kept.add(normalizeEscapes(param));
+            }
+        }
+
+        kept.sort(null);
+        return String.join("&", kept);
+    }
+
+    /**
+     * Приводит шестнадцатеричные цифры в escape-последовательностях к верхнему регистру.
+     */
+    private static String normalizeEscapes(String value) {
+        int percent = value.indexOf('%');
+        if (percent < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value);
+        for (int i = percent; i + 2 < result.length(); i++) {
+            if (result.charAt(i) == '%') {
+                result.setCharAt(i + 1, Character.toUpperCase(result.charAt(i + 1)));
+                result.setCharAt(i + 2, Character.toUpperCase(result.charAt(i + 2)));
+                i += 2;
+            }
+        }
+        return result.toString();
+    }
+
+    private static Set<String> toLowerCaseSet(List<String> values) {
+        Set<String> result = new HashSet<>();
+        if (values != null) {
+            values.forEach(value -> result.add(value.trim().toLowerCase(Locale.ROOT)));
+        }
+        return result;
+    }
+
+    private static String stripDot(String host) {
+        return host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+    }
+
+    private static String hostKey(String host) {
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    private static class SiteRules {
+        private final String scheme;
+        private final String host;
+        private final String hostKey;
+        private final int port;
+        private final Set<String> significantParams;
+
+        private SiteRules(String scheme, String host, int port, Set<String> significantParams) {
+            this.scheme = scheme;
+            this.host = host;
+            this.hostKey = hostKey(host);
+            this.port = port;
+            this.significantParams = significantParams;
+        }
+
+        static SiteRules of(String siteUrl, Set<String> significantParams) {
+            try {
+                URI uri = new URI(siteUrl.trim());
+                if (uri.getScheme() == null || uri.getHost() == null) {
+                    return null;
+                }
+                return new SiteRules(uri.getScheme().toLowerCase(Locale.ROOT),
+                        stripDot(uri.getHost().toLowerCase(Locale.ROOT)), uri.getPort(), significantParams);
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный по размеру кэш «словоформа → лемма» для {@link LemmaService}.
+ * Разбит на полосы, у каждой свой замок и своя очередь LRU, чтобы потоки
+ * лемматизации не ждали друг друга. Когда полоса заполнена, из неё
+ * вытесняется давно не использованная словоформа.
+ */
+public class WordFormCache {
+
+    /** Значение для служебных и неизвестных словоформ: они не дают лемм. */
+    public static final String NO_LEMMA = new String("");
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize наибольшее число словоформ; 0 — кэш выключен
+     */
+    public WordFormCache(int maxSize) {
+        int stripeSize = maxSize <= 0 ? 0 : Math.max(1, maxSize / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    /**
+     * @return лемма, {@link #NO_LEMMA} или {@code null}, если словоформы нет в кэше
+     */
+    public String get(String word) {
+        Stripe stripe = stripeFor(word);
+        String lemma;
+        synchronized (stripe) {
+            lemma = stripe.get(word);
+        }
+        if (lemma != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return lemma;
+    }
+
+    public void put(String word, String lemma) {
+        Stripe stripe = stripeFor(word);
+        if (stripe.maxSize == 0) {
+            return;
+        }
+        synchronized (stripe) {
+            stripe.put(word, lemma);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return доля запросов, найденных в кэше
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Stripe stripeFor(String word) {
+        int hash = word.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private class Stripe extends LinkedHashMap<String, String> {
+        private final int maxSize;
+
+        Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
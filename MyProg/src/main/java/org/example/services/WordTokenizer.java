@@ -0,0 +1,93 @@
+package org.example.services;
+
+/**
+ * Разбивка текста на слова за один проход по символам. Словом считается
+ * последовательность русских или латинских букв; всё остальное, включая
+ * цифры и буквы других алфавитов, разделяет слова. Буквы приводятся
+ * к нижнему регистру по ходу чтения, а для каждого слова создаётся
+ * одна строка.
+ */
+public final class WordTokenizer {
+
+    /** Алфавит слова. */
+    public enum Script {
+        CYRILLIC,
+        LATIN,
+        /** Русские и латинские буквы вперемешку. */
+        MIXED
+    }
+
+    @FunctionalInterface
+    public interface TokenHandler {
+        /**
+         * @param word     слово в нижнем регистре
+         * @param position порядковый номер слова среди переданных обработчику, с нуля
+         * @param start    смещение первого символа слова в тексте
+         * @param end      смещение за последним символом слова
+         */
+        void token(String word, Script script, int position, int start, int end);
+    }
+
+    private WordTokenizer() {
+    }
+
+    /**
+     * Передаёт обработчику слова текста не короче {@code minLength} символов.
+     */
+    public static void tokenize(CharSequence text, int minLength, TokenHandler handler) {
+        char[] buffer = new char[32];
+        int length = 0;
+        int start = 0;
+        boolean cyrillic = false;
+        boolean latin = false;
+        int position = 0;
+
+        int textLength = text.length();
+        for (int i = 0; i <= textLength; i++) {
+            char c = i < textLength ? toLower(text.charAt(i)) : ' ';
+
+            if (c >= 'a' && c <= 'z') {
+                latin = true;
+            } else if (c >= 'а' && c <= 'я' || c == 'ё') {
+                cyrillic = true;
+            } else {
+                if (length >= minLength && length > 0) {
+                    Script script = cyrillic && latin ? Script.MIXED : cyrillic ? Script.CYRILLIC : Script.LATIN;
+                    handler.token(new String(buffer, 0, length), script, position++, start, i);
+                }
+                length = 0;
+                cyrillic = false;
+                latin = false;
+                continue;
+            }
+
+            if (length == 0) {
+                start = i;
+            } else if (length == buffer.length) {
+                char[] grown = new char[buffer.length * 2];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+            buffer[length++] = c;
+        }
+    }
+
+    /**
+     * Нижний регистр без обращения к таблицам Unicode для русских и латинских букв.
+     */
+    private static char toLower(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        if (c == 'Ё') {
+            return 'ё';
+        }
+        if (c < 128 || c >= 'а' && c <= 'я' || c == 'ё') {
+            return c;
+        }
+        return Character.toLowerCase(c);
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.services;
+
+import org.example.model.Site;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlFrontierTest {
+
+    private static final String SITE = "https://example.com";
+    private static final PageValidators KNOWN = new PageValidators("\"etag\"", null, "hash", null);
+
+    @Test
+    void offersEachUrlOnce() {
+        CrawlFrontier frontier = new CrawlFrontier(new Site());
+
+        assertTrue(frontier.offer(SITE + "/a"));
+        assertFalse(frontier.offer(SITE + "/a"));
+        assertTrue(frontier.offer(SITE + "/b"));
+
+        assertEquals(SITE + "/a", frontier.poll());
+        frontier.complete(SITE + "/a");
+        assertEquals(SITE + "/b", frontier.poll());
+        assertFalse(frontier.isExhausted());
+        frontier.complete(SITE + "/b");
+
+        assertTrue(frontier.isExhausted());
+        assertEquals(2, frontier.getDiscoveredCount());
+        assertEquals(2, frontier.getProcessedCount());
+    }
+
+    @Test
+    void rejectsUrlsDisallowedByRobots() {
+        CrawlFrontier frontier = new CrawlFrontier(new Site());
+        frontier.setRobots(RobotsTxt.parse("User-agent: *\nDisallow: /private\n", "SearchBot"));
+
+        assertFalse(frontier.offer(SITE + "/private/page"));
+        assertTrue(frontier.offer(SITE + "/public/page"));
+    }
+
+    @Test
+    void limitsConcurrentFetches() {
+        CrawlFrontier frontier = new CrawlFrontier(new Site(), 1);
+        frontier.offer(SITE + "/a");
+        frontier.offer(SITE + "/b");
+
+        String first = frontier.poll();
+        assertNull(frontier.poll());
+        frontier.complete(first);
+        assertEquals(SITE + "/b", frontier.poll());
+    }
+
+    @Test
+    void countsRetriedPageOnce() {
+        CrawlFrontier frontier = new CrawlFrontier(new Site());
+        String url = SITE + "/slow";
+        frontier.offer(url);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertEquals(url, frontier.poll());
+            assertTrue(frontier.retryLater(url, 2));
+            frontier.complete(url);
+            assertEquals(0, frontier.getProcessedCount());
+        }
+        assertEquals(url, frontier.poll());
+        assertFalse(frontier.retryLater(url, 2));
+        frontier.complete(url);
+
+        assertEquals(1, frontier.getProcessedCount());
+        assertTrue(frontier.isExhausted());
+    }
+
+    @Test
+    void refusesCanonicalCycle() {
+        CrawlFrontier frontier = new CrawlFrontier(new Site());
+
+        assertTrue(frontier.redirectToCanonical(SITE + "/a", SITE + "/b"));
+        assertTrue(frontier.redirectToCanonical(SITE + "/b", SITE + "/c"));
+        assertFalse(frontier.redirectToCanonical(SITE + "/c", SITE + "/a"));
+    }
+
+    @Test
+    void offersKnownPageOnceWithBloomFilter() {
+        BloomSeenUrlFilter filter = new BloomSeenUrlFilter(1000, 0.01);
+        filter.add(SITE + "/known");
+        CrawlFrontier frontier = new CrawlFrontier(new Site(), 0, filter);
+        frontier.addKnownPage(SITE + "/known", KNOWN);
+
+        assertTrue(frontier.offer(SITE + "/known"));
+        assertFalse(frontier.offer(SITE + "/known"));
+    }
+
+    @Test
+    void resumeSkipsKnownPagesCrawledBeforeCheckpoint() {
+        BloomSeenUrlFilter interrupted = new BloomSeenUrlFilter(1000, 0.001);
+        interrupted.add(SITE + "/");
+        interrupted.add(SITE + "/crawled");
+        interrupted.add(SITE + "/pending");
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(1, SITE, 3, 2, List.of(SITE + "/pending"), List.of(),
+                interrupted.toLongArray(), interrupted.getHashCount());
+
+        CrawlFrontier frontier = new CrawlFrontier(new Site(), 0, new BloomSeenUrlFilter(1000, 0.001));
+        frontier.addKnownPage(SITE + "/crawled", KNOWN);
+        frontier.addKnownPage(SITE + "/pending", KNOWN);
+        frontier.addKnownPage(SITE + "/unreached", KNOWN);
+        frontier.restore(checkpoint);
+
+        assertEquals(SITE + "/pending", frontier.poll());
+        assertNotNull(frontier.takeKnownPage(SITE + "/pending"));
+        assertFalse(frontier.offer(SITE + "/crawled"));
+        assertNull(frontier.getKnownPage(SITE + "/crawled"));
+        assertTrue(frontier.offer(SITE + "/unreached"));
+        assertEquals(2, frontier.getProcessedCount());
+    }
+}
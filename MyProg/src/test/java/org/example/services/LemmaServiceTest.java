@@ -0,0 +1,118 @@
+package org.example.services;
+
+import org.example.config.SitesList;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LemmaServiceTest {
+
+    private static final String[] WORDS = {
+            "кошки", "кошка", "собаки", "бегают", "бежал", "дом", "дома", "домами", "лес", "лесу",
+            "и", "в", "на", "cats", "running", "houses", "the", "and", "river", "rivers"
+    };
+
+    private static LemmaService lemmaService;
+    private static ExecutorService executor;
+
+    @BeforeAll
+    static void setUp() {
+        lemmaService = new LemmaService(new SitesList());
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void countsLemmasAndSkipsStopWords() {
+        Map<String, Integer> lemmas = lemmaService.getLemmas("Кошки и кошка бегают в доме");
+
+        assertEquals(2, lemmas.get("кошка"));
+        assertNull(lemmas.get("и"));
+        assertNull(lemmas.get("в"));
+    }
+
+    @Test
+    void parallelCountsMatchSequential() {
+        List<String> texts = randomTexts(300);
+
+        List<TermCounter> parallel = lemmaService.countLemmasAll(texts, executor);
+
+        assertEquals(texts.size(), parallel.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals(lemmaService.getLemmas(texts.get(i)), parallel.get(i).toMap(), texts.get(i));
+        }
+    }
+
+    @Test
+    void parallelPositionsMatchSequential() {
+        List<String> texts = randomTexts(200);
+        Map<String, TermCounter> results = new ConcurrentHashMap<>();
+
+        lemmaService.lemmatizeAll(texts, text -> text, true, executor,
+                (text, lemmas) -> results.put(text, lemmas)).join();
+
+        for (String text : texts) {
+            TermCounter lemmas = results.get(text);
+            Map<String, PositionList> expected = lemmaService.getLemmaPositions(text);
+            assertEquals(expected.size(), lemmas.size(), text);
+            expected.forEach((lemma, positions) -> {
+                PositionList actual = lemmas.getPositions(lemma);
+                assertNotNull(actual, lemma);
+                assertEquals(positions.size(), lemmas.get(lemma), lemma);
+                assertArrayEquals(positions.encode(), actual.encode(), lemma);
+            });
+        }
+    }
+
+    @Test
+    void failedDocumentGetsEmptyCounter() {
+        List<String> texts = List.of("кошка", "сбой", "собака");
+        Map<String, TermCounter> results = new ConcurrentHashMap<>();
+
+        lemmaService.lemmatizeAll(texts, text -> {
+            if (text.equals("сбой")) {
+                throw new IllegalStateException("сбой");
+            }
+            return text;
+        }, executor, (text, lemmas) -> results.put(text, lemmas)).join();
+
+        assertTrue(results.get("сбой").isEmpty());
+        assertEquals(1, results.get("кошка").get("кошка"));
+        assertEquals(1, results.get("собака").get("собака"));
+    }
+
+    /**
+     * Тексты без повторов, чтобы результаты можно было искать по тексту.
+     */
+    private static List<String> randomTexts(int count) {
+        Random random = new Random(42);
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder("текст").append(i);
+            int words = 5 + random.nextInt(200);
+            for (int w = 0; w < words; w++) {
+                text.append(random.nextBoolean() ? " " : ", ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            texts.add(text.toString());
+        }
+        return texts;
+    }
+}
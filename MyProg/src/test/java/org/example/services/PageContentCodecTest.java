@@ -0,0 +1,48 @@
+package org.example.services;
+
+import org.example.config.SitesList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageContentCodecTest {
+
+    private static final String HTML = "<!DOCTYPE html><html lang=\"ru\"><head><title>Главная</title></head>"
+            + "<body><div class=\"container\"><p>Текст страницы — ".repeat(20) + "</p></div></body></html>";
+
+    @Test
+    void compressesAndRestoresContent() {
+        PageContentCodec codec = new PageContentCodec(sitesList(true));
+
+        String stored = codec.encode(HTML);
+
+        assertTrue(stored.startsWith("z1:"));
+        assertTrue(stored.length() < HTML.length());
+        assertEquals(HTML, PageContentCodec.decode(stored));
+    }
+
+    @Test
+    void storesAsIsWhenCompressionIsOff() {
+        PageContentCodec codec = new PageContentCodec(sitesList(false));
+
+        assertEquals(HTML, codec.encode(HTML));
+        assertEquals(HTML, PageContentCodec.decode(HTML));
+    }
+
+    @Test
+    void keepsEmptyAndMissingContent() {
+        PageContentCodec codec = new PageContentCodec(sitesList(true));
+
+        assertEquals("", codec.encode(""));
+        assertNull(codec.encode(null));
+        assertNull(PageContentCodec.decode(null));
+    }
+
+    private static SitesList sitesList(boolean compress) {
+        SitesList sitesList = new SitesList();
+        sitesList.setCompressContent(compress);
+        return sitesList;
+    }
+}
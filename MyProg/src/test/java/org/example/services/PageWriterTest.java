@@ -0,0 +1,110 @@
+package org.example.services;
+
+import org.example.config.SitesList;
+import org.example.model.Site;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PageWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final LemmaIndexer lemmaIndexer = mock(LemmaIndexer.class);
+    private final PageContentStore contentStore = mock(PageContentStore.class);
+    private final SitesList sitesList = new SitesList();
+    private final Site site = new Site();
+    private PageWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        site.setId(1);
+        sitesList.setWriterBatchSize(10);
+        sitesList.setStatusTimeInterval(50);
+        writer = new PageWriter(jdbcTemplate, sitesList, lemmaIndexer, new PageContentCodec(sitesList), contentStore);
+        writer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWaitsForSubmittedPages() throws InterruptedException {
+        AtomicInteger written = new AtomicInteger();
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO page"), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class))).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            written.addAndGet(invocation.<Collection<?>>getArgument(1).size());
+            return new int[0][];
+        });
+
+        for (int i = 0; i < 25; i++) {
+            writer.submit(site, "/missing" + i, 404, "", PageText.EMPTY, PageValidators.NONE);
+        }
+        writer.flush();
+
+        assertEquals(25, written.get());
+        verify(lemmaIndexer, never()).submitAll(anyInt(), anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedBatchIsWrittenRowByRow() throws InterruptedException {
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO page"), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("Data too long"));
+        when(jdbcTemplate.update(startsWith("INSERT INTO page"), any(PreparedStatementSetter.class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("Data too long"))
+                .thenReturn(1);
+
+        for (int i = 0; i < 3; i++) {
+            writer.submit(site, "/page" + i, 200, "<p>текст</p>", new PageText("", "текст"), PageValidators.NONE);
+        }
+        writer.flush();
+
+        verify(jdbcTemplate, times(3)).update(startsWith("INSERT INTO page"), any(PreparedStatementSetter.class));
+        // Страницы могут попасть в одну пачку или в разные, но на индексацию идут только записанные.
+        ArgumentCaptor<String> selects = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeastOnce()).query(selects.capture(), any(RowCallbackHandler.class), any(Object[].class));
+        long indexed = selects.getAllValues().stream()
+                .mapToLong(sql -> sql.chars().filter(c -> c == '?').count() - 1)
+                .sum();
+        assertEquals(2, indexed);
+        verify(lemmaIndexer, atLeastOnce()).submitAll(eq(1), anyMap());
+    }
+
+    @Test
+    void rejectsTooLongPath() throws InterruptedException {
+        writer.submit(site, "/" + "a".repeat(600), 200, "", PageText.EMPTY, PageValidators.NONE);
+        writer.flush();
+
+        verify(jdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.services;
+
+import org.example.model.Site;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolitenessSchedulerTest {
+
+    @Test
+    void spacesRequestsToOneHost() throws InterruptedException {
+        List<CrawlFrontier> finished = new ArrayList<>();
+        PolitenessScheduler scheduler = new PolitenessScheduler(finished::add);
+        CrawlFrontier frontier = frontier("https://example.com", 3);
+        scheduler.register(frontier, 50, 1);
+
+        long previous = 0;
+        for (int i = 0; i < 3; i++) {
+            PolitenessScheduler.CrawlLease lease = scheduler.next();
+            long now = System.nanoTime();
+            if (i > 0) {
+                assertTrue(now - previous >= TimeUnit.MILLISECONDS.toNanos(40), "интервал " + (now - previous));
+            }
+            previous = now;
+            scheduler.complete(lease);
+        }
+
+        assertEquals(List.of(frontier), finished);
+        assertTrue(scheduler.isIdle());
+        assertNull(scheduler.next());
+    }
+
+    @Test
+    void alternatesSitesOfEqualWeight() throws InterruptedException {
+        PolitenessScheduler scheduler = new PolitenessScheduler(frontier -> {
+        });
+        CrawlFrontier first = frontier("https://first.example", 4);
+        CrawlFrontier second = frontier("https://second.example", 4);
+        scheduler.register(first, 0, 10);
+        scheduler.register(second, 0, 10);
+
+        int fromFirst = 0;
+        for (int i = 0; i < 4; i++) {
+            PolitenessScheduler.CrawlLease lease = scheduler.next();
+            if (lease.getFrontier() == first) {
+                fromFirst++;
+            }
+            scheduler.complete(lease);
+        }
+
+        assertEquals(2, fromFirst);
+    }
+
+    @Test
+    void holdKeepsSiteUntilReleased() throws InterruptedException {
+        List<CrawlFrontier> finished = new ArrayList<>();
+        PolitenessScheduler scheduler = new PolitenessScheduler(finished::add);
+        CrawlFrontier frontier = frontier("https://example.com", 1);
+        frontier.hold();
+        scheduler.register(frontier, 0, 1);
+
+        scheduler.complete(scheduler.next());
+        assertTrue(finished.isEmpty());
+
+        scheduler.release(frontier);
+        assertEquals(1, finished.size());
+        assertSame(frontier, finished.get(0));
+    }
+
+    @Test
+    void stopEndsWaiting() throws InterruptedException {
+        PolitenessScheduler scheduler = new PolitenessScheduler(frontier -> {
+        });
+        CrawlFrontier frontier = frontier("https://example.com", 0);
+        frontier.hold();
+        scheduler.register(frontier, 0, 1);
+
+        Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler.stop();
+        });
+        stopper.start();
+
+        assertNull(scheduler.next());
+        stopper.join();
+    }
+
+    private static CrawlFrontier frontier(String url, int pages) {
+        Site site = new Site();
+        site.setUrl(url);
+        CrawlFrontier frontier = new CrawlFrontier(site);
+        for (int i = 0; i < pages; i++) {
+            frontier.offer(url + "/page" + i);
+        }
+        return frontier;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PositionListTest {
+
+    @Test
+    void roundTripsOccurrences() {
+        PositionList list = new PositionList();
+        list.add(0, 0, 5);
+        list.add(3, 20, 26);
+        list.add(4, 27, 30);
+
+        assertSameOccurrences(list, PositionList.decode(list.encode()));
+    }
+
+    @Test
+    void roundTripsEmptyList() {
+        PositionList decoded = PositionList.decode(new PositionList().encode());
+
+        assertEquals(0, decoded.size());
+    }
+
+    @Test
+    void roundTripsLargeValuesAndGrowth() {
+        PositionList list = new PositionList();
+        int offset = 0;
+        for (int i = 0; i < 1000; i++) {
+            int start = offset + i * 37;
+            list.add(i * 1000, start, start + 1 + i % 50);
+            offset = start + 1 + i % 50;
+        }
+        list.add(Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2 + 10);
+
+        assertSameOccurrences(list, PositionList.decode(list.encode()));
+    }
+
+    @Test
+    void clearedListIsReusable() {
+        PositionList list = new PositionList();
+        list.add(1, 2, 3);
+        list.clear();
+        list.add(7, 8, 9);
+
+        assertEquals(1, list.size());
+        assertSameOccurrences(list, PositionList.decode(list.encode()));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        PositionList list = new PositionList();
+        list.add(1, 2, 3);
+        PositionList copy = list.copy();
+        list.clear();
+        copy.add(4, 5, 6);
+
+        assertEquals(0, list.size());
+        assertEquals(2, copy.size());
+        assertEquals(4, copy.getPosition(1));
+    }
+
+    @Test
+    void rejectsTruncatedData() {
+        PositionList list = new PositionList();
+        list.add(0, 0, 300);
+        list.add(500, 1000, 1010);
+        byte[] encoded = list.encode();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> PositionList.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> PositionList.decode(new byte[0]));
+    }
+
+    @Test
+    void rejectsOverlongNumber() {
+        byte[] overlong = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+
+        assertThrows(IllegalArgumentException.class, () -> PositionList.decode(overlong));
+    }
+
+    private static void assertSameOccurrences(PositionList expected, PositionList actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getPosition(i), actual.getPosition(i));
+            assertEquals(expected.getStart(i), actual.getStart(i));
+            assertEquals(expected.getEnd(i), actual.getEnd(i));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsTxtTest {
+
+    private static final String SITE = "https://example.com";
+
+    @Test
+    void appliesPrefixRules() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /admin
+                Disallow:
+                """, "SearchBot");
+
+        assertFalse(robots.isAllowed(SITE + "/admin"));
+        assertFalse(robots.isAllowed(SITE + "/admin/users?id=1"));
+        assertTrue(robots.isAllowed(SITE + "/"));
+        assertTrue(robots.isAllowed(SITE + "/news/admin"));
+    }
+
+    @Test
+    void longestRuleWinsAndAllowWinsTie() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /catalog
+                Allow: /catalog/public
+                Disallow: /same
+                Allow: /same
+                """, "SearchBot");
+
+        assertFalse(robots.isAllowed(SITE + "/catalog/private"));
+        assertTrue(robots.isAllowed(SITE + "/catalog/public/item"));
+        assertTrue(robots.isAllowed(SITE + "/same/page"));
+    }
+
+    @Test
+    void supportsWildcardAndEndAnchor() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /*?sort=
+                Disallow: /private*/drafts
+                """, "SearchBot");
+
+        assertFalse(robots.isAllowed(SITE + "/files/report.pdf"));
+        assertTrue(robots.isAllowed(SITE + "/files/report.pdf.html"));
+        assertFalse(robots.isAllowed(SITE + "/catalog?sort=price"));
+        assertTrue(robots.isAllowed(SITE + "/catalog?page=2"));
+        assertFalse(robots.isAllowed(SITE + "/private-area/x/drafts/1"));
+        assertTrue(robots.isAllowed(SITE + "/private-area/published"));
+    }
+
+    @Test
+    void prefersSpecificAgentGroup() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /
+                Crawl-delay: 10
+
+                User-agent: OtherBot
+                User-agent: SearchBot
+                Disallow: /tmp
+                Crawl-delay: 0.5
+
+                Sitemap: https://example.com/sitemap.xml
+                """, "Mozilla/5.0 (compatible; SearchBot/1.0)");
+
+        assertTrue(robots.isAllowed(SITE + "/news"));
+        assertFalse(robots.isAllowed(SITE + "/tmp/file"));
+        assertEquals(0.5, robots.getCrawlDelaySeconds());
+        assertEquals(List.of("https://example.com/sitemap.xml"), robots.getSitemaps());
+    }
+
+    @Test
+    void fallsBackToWildcardGroup() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: OtherBot
+                Disallow: /
+
+                User-agent: *
+                Disallow: /search # комментарий
+                """, "SearchBot");
+
+        assertTrue(robots.isAllowed(SITE + "/news"));
+        assertFalse(robots.isAllowed(SITE + "/search?q=1"));
+        assertNull(robots.getCrawlDelaySeconds());
+    }
+
+    @Test
+    void pathologicalWildcardPatternIsFast() {
+        RobotsTxt robots = RobotsTxt.parse("User-agent: *\nDisallow: /*a*a*a*a*a*a*a*a*a*a*a*a*b$\n", "SearchBot");
+        String path = SITE + "/" + "a".repeat(2000);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> assertTrue(robots.isAllowed(path)));
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimHashTest {
+
+    private static final String TEXT = "Поисковый движок обходит страницы сайтов, сохраняет их содержимое "
+            + "и строит индекс лемм. Для каждой страницы считается отпечаток, по которому находятся "
+            + "почти одинаковые страницы: версии для печати, страницы с другим порядком параметров "
+            + "и копии с небольшими отличиями в подвале или меню сайта.";
+
+    @Test
+    void ignoresCaseAndPunctuation() {
+        Long first = SimHash.fingerprint(TEXT, 10);
+        Long second = SimHash.fingerprint(TEXT.toUpperCase().replace(",", " ;"), 10);
+
+        assertNotNull(first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void similarTextsAreClose() {
+        long original = SimHash.fingerprint(TEXT, 10);
+        long edited = SimHash.fingerprint(TEXT + " Дата обновления: вчера.", 10);
+        long other = SimHash.fingerprint("Совсем другой текст про погоду, реки, горы, леса и города "
+                + "с иным набором слов, который не совпадает с текстом о поисковом движке ни в одной тройке.", 10);
+
+        assertTrue(SimHash.distance(original, edited) < SimHash.distance(original, other));
+        assertTrue(SimHash.distance(original, edited) <= 10);
+    }
+
+    @Test
+    void shortTextHasNoFingerprint() {
+        assertNull(SimHash.fingerprint("три слова всего", 10));
+        assertNull(SimHash.fingerprint("", 0));
+    }
+}
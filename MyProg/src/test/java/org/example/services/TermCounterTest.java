@@ -0,0 +1,72 @@
+package org.example.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TermCounterTest {
+
+    @Test
+    void countsTermsAcrossResize() {
+        TermCounter counter = new TermCounter();
+        for (int i = 0; i < 10_000; i++) {
+            counter.add("term" + i % 1000);
+        }
+
+        assertEquals(1000, counter.size());
+        assertEquals(10, counter.get("term7"));
+        assertEquals(0, counter.get("missing"));
+    }
+
+    @Test
+    void keepsOccurrencesAcrossResize() {
+        TermCounter counter = new TermCounter();
+        for (int i = 0; i < 2000; i++) {
+            counter.addOccurrence("term" + i % 500, i, i * 10, i * 10 + 5);
+        }
+
+        PositionList positions = counter.getPositions("term3");
+        assertNotNull(positions);
+        assertEquals(4, positions.size());
+        assertEquals(4, counter.get("term3"));
+        assertEquals(1503, positions.getPosition(3));
+        assertEquals(15030, positions.getStart(3));
+    }
+
+    @Test
+    void clearDropsStaleOccurrences() {
+        TermCounter counter = new TermCounter();
+        counter.addOccurrence("кошка", 0, 0, 5);
+        counter.addOccurrence("кошка", 1, 6, 11);
+        counter.clear();
+
+        counter.add("кошка");
+        assertNull(counter.getPositions("кошка"));
+
+        counter.clear();
+        counter.addOccurrence("кошка", 5, 30, 35);
+        assertEquals(1, counter.getPositions("кошка").size());
+        assertEquals(5, counter.getPositions("кошка").getPosition(0));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        TermCounter counter = new TermCounter();
+        counter.addOccurrence("дом", 0, 0, 3);
+        counter.add("лес", 2);
+
+        TermCounter copy = counter.copy();
+        counter.clear();
+        counter.addOccurrence("дом", 9, 90, 93);
+
+        assertEquals(Map.of("дом", 1, "лес", 2), copy.toMap());
+        assertEquals(0, copy.getPositions("дом").getPosition(0));
+        assertNull(copy.getPositions("лес"));
+        assertTrue(counter.get("лес") == 0);
+    }
+}